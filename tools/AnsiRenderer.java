@@ -0,0 +1,369 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class renders the token streams of <tt>Hilite</tt> and
+ * <tt>GenericHilite</tt> for a terminal, with ANSI escape sequences (SGR)
+ * instead of HTML tags. The colors of a theme (HTML color names or
+ * <tt>#RRGGBB</tt> values) are mapped either to 24-bit colors, or to the
+ * nearest colors of the 256-color palette of <tt>xterm</tt>; its styles
+ * are mapped to bold, italic, underline, strike-through, or blink when
+ * they have such a CSS equivalent (see <tt>HiliteTheme</tt>), and ignored
+ * otherwise. Documentation comments are rendered verbatim as comments.
+ * <p>
+ * Each line of a highlighted token is highlighted on its own, so that the
+ * output may be cut or paged by lines (<i>e.g.</i>, with <tt>less -R</tt>).
+ * The control characters of the source (other than tabs and line breaks)
+ * are shown in caret notation rather than written as they are, so that a
+ * source cannot send its own escape sequences to the terminal. The output
+ * is flushed after each chunk of tokens, so that a source read through a
+ * stream is shown as it is read.
+ *
+ * @see         TokenRenderer
+ * @see         HiliteTheme
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 13:02:17 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.Writer;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+
+public class AnsiRenderer implements TokenRenderer
+{
+  /**
+   * The escape sequence resetting all attributes.
+   */
+  final static String RESET = "\033[0m";
+
+  /**
+   * The token type of documentation comments (<tt>Hilite.JAVADOC</tt> or
+   * <tt>GenericHilite.SYNTAXDOC</tt>).
+   */
+  final static int DOC = Hilite.JAVADOC;
+
+  /**
+   * The escape sequences of the highlighting tags (empty if none), indexed
+   * as in <tt>HiliteTheme</tt>.
+   */
+  private final String[] sequences = new String[HiliteTheme.TAG_COUNT];
+
+  /**
+   * The escape sequence and the text of the annotation tag.
+   */
+  private final String annotateSequence, annotateTag;
+
+  /**
+   * The output writer.
+   */
+  private final Writer out;
+
+  /**
+   * Constructs a renderer writing to the specified writer in the colors and
+   * styles of the specified theme.
+   * @param theme the colors and styles
+   * @param trueColor whether to use 24-bit colors rather than the 256-color palette
+   * @param out the output writer
+   */
+  public AnsiRenderer (HiliteTheme theme, boolean trueColor, Writer out)
+    {
+      for (int i=0; i<sequences.length; i++)
+        sequences[i] = sequence(theme.colors[i],theme.styles[i],trueColor);
+
+      annotateSequence = sequence(theme.ANNOTATE_TAG_COLOR,"B",trueColor);
+      annotateTag = theme.ANNOTATE_TAG;
+      this.out = out;
+    }
+
+  /**
+   * Returns true iff the terminal declares (in the <tt>COLORTERM</tt>
+   * environment variable) that it supports 24-bit colors.
+   */
+  public static boolean trueColorTerminal ()
+    {
+      String colorTerm = System.getenv("COLORTERM");
+
+      return colorTerm != null
+          && (colorTerm.equalsIgnoreCase("truecolor") || colorTerm.equalsIgnoreCase("24bit"));
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Returns the escape sequence for the specified color and style (either
+   * may be <tt>null</tt>), or the empty string if neither has an ANSI
+   * equivalent.
+   */
+  static String sequence (String color, String style, boolean trueColor)
+    {
+      StringBuilder parameters = new StringBuilder();
+
+      if (style != null)
+        {
+          String property = HiliteTheme.cssProperty(style);
+
+          if ("font-weight:bold".equals(property))
+            parameters.append("1;");
+          else if ("font-style:italic".equals(property))
+            parameters.append("3;");
+          else if ("text-decoration:underline".equals(property))
+            parameters.append("4;");
+          else if ("text-decoration:line-through".equals(property))
+            parameters.append("9;");
+          else if (style.equalsIgnoreCase("BLINK"))
+            parameters.append("5;");
+        }
+
+      int rgb = (color == null) ? -1 : rgb(color);
+
+      if (rgb >= 0)
+        {
+          if (trueColor)
+            parameters.append("38;2;").append(rgb >> 16).append(';')
+                      .append((rgb >> 8) & 0xFF).append(';').append(rgb & 0xFF).append(';');
+          else
+            parameters.append("38;5;").append(xterm(rgb)).append(';');
+        }
+
+      if (parameters.length() == 0)
+        return "";
+
+      parameters.setLength(parameters.length()-1);
+      return "\033["+parameters+"m";
+    }
+
+  /**
+   * The RGB values of the HTML color names.
+   */
+  private final static HashMap COLORS = new HashMap();
+
+  static
+    {
+      String[] colors =
+        { "black", "000000",      "silver", "C0C0C0",     "gray", "808080",
+          "grey", "808080",       "white", "FFFFFF",      "maroon", "800000",
+          "red", "FF0000",        "purple", "800080",     "fuchsia", "FF00FF",
+          "magenta", "FF00FF",    "green", "008000",      "lime", "00FF00",
+          "olive", "808000",      "yellow", "FFFF00",     "navy", "000080",
+          "blue", "0000FF",       "teal", "008080",       "aqua", "00FFFF",
+          "cyan", "00FFFF",       "brown", "A52A2A",      "orange", "FFA500",
+          "pink", "FFC0CB",       "gold", "FFD700",       "violet", "EE82EE",
+          "indigo", "4B0082",     "khaki", "F0E68C",      "tan", "D2B48C",
+          "salmon", "FA8072",     "crimson", "DC143C",    "coral", "FF7F50",
+          "tomato", "FF6347",     "turquoise", "40E0D0",  "beige", "F5F5DC",
+          "ivory", "FFFFF0",      "lavender", "E6E6FA",   "plum", "DDA0DD",
+          "orchid", "DA70D6",     "chocolate", "D2691E",  "sienna", "A0522D",
+          "firebrick", "B22222",  "forestgreen", "228B22", "seagreen", "2E8B57",
+          "steelblue", "4682B4",  "royalblue", "4169E1",  "skyblue", "87CEEB",
+          "slategray", "708090",  "darkblue", "00008B",   "darkgreen", "006400",
+          "darkred", "8B0000",    "darkgray", "A9A9A9",   "darkgrey", "A9A9A9",
+          "darkcyan", "008B8B",   "darkmagenta", "8B008B", "darkorange", "FF8C00",
+          "darkviolet", "9400D3", "lightblue", "ADD8E6",  "lightgreen", "90EE90",
+          "lightgray", "D3D3D3",  "lightgrey", "D3D3D3",  "lightyellow", "FFFFE0" };
+
+      for (int i=0; i<colors.length; i+=2)
+        COLORS.put(colors[i],Integer.valueOf(colors[i+1],16));
+    }
+
+  /**
+   * Returns the RGB value of the specified HTML color (a name or a
+   * <tt>#RGB</tt> or <tt>#RRGGBB</tt> value), or -1 if it is not one.
+   */
+  static int rgb (String color)
+    {
+      color = color.trim();
+
+      if (color.startsWith("#"))
+        try
+          {
+            String hex = color.substring(1);
+
+            if (hex.length() == 3)
+              hex = ""+hex.charAt(0)+hex.charAt(0)+hex.charAt(1)+hex.charAt(1)+hex.charAt(2)+hex.charAt(2);
+
+            return (hex.length() == 6) ? Integer.parseInt(hex,16) : -1;
+          }
+        catch (NumberFormatException e)
+          {
+            return -1;
+          }
+
+      Integer rgb = (Integer)COLORS.get(color.toLowerCase(Locale.ROOT));
+      return (rgb == null) ? -1 : rgb.intValue();
+    }
+
+  /**
+   * The intensities of the levels of the 6x6x6 color cube of the 256-color
+   * palette.
+   */
+  private final static int[] CUBE = { 0, 95, 135, 175, 215, 255 };
+
+  /**
+   * Returns the index of the color of the 256-color palette nearest to the
+   * specified RGB value: in its color cube (16 to 231), or in its gray
+   * ramp (232 to 255).
+   */
+  static int xterm (int rgb)
+    {
+      int r = rgb >> 16, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+      int ri = cubeLevel(r), gi = cubeLevel(g), bi = cubeLevel(b);
+
+      int gray = (r+g+b)/3;
+      int level = (gray > 238) ? 23 : Math.max(0,(gray-3)/10);
+      int grayValue = 8+10*level;
+
+      if (distance(r,g,b,grayValue,grayValue,grayValue) < distance(r,g,b,CUBE[ri],CUBE[gi],CUBE[bi]))
+        return 232+level;
+
+      return 16+36*ri+6*gi+bi;
+    }
+
+  /**
+   * Returns the level of the color cube nearest to the specified intensity.
+   */
+  private static int cubeLevel (int v)
+    {
+      return (v < 48) ? 0 : (v < 115) ? 1 : (v-35)/40;
+    }
+
+  /**
+   * Returns the squared distance between two colors.
+   */
+  private static int distance (int r1, int g1, int b1, int r2, int g2, int b2)
+    {
+      return (r1-r2)*(r1-r2) + (g1-g2)*(g1-g2) + (b1-b2)*(b1-b2);
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Starts rendering a source; nothing is written.
+   */
+  public void start (String name)
+    {
+    }
+
+  /**
+   * Renders the tokens of the specified stream, along with the text
+   * between them, and flushes the output.
+   */
+  public void render (TokenStream tokens, boolean last) throws IOException
+    {
+      char[] text = tokens.text();
+      int rendered = 0;
+
+      for (int i=0; i<tokens.size(); i++)
+        {
+          int start = tokens.start(i);
+          int end = tokens.end(i);
+
+          writeText(text,rendered,end,start,"");
+
+          if (tokens.type(i) == DOC)
+            writeText(text,start,end,end,sequences[HiliteTheme.COMMENT]);
+          else if (tokens.tag(i) == HiliteTheme.ANNOTATION && tokens.aux(i) > 0)
+            {
+              String sequence = sequences[HiliteTheme.ANNOTATION];
+              int annotation = start+tokens.aux(i);
+
+              writeText(text,start,end,annotation,sequence);
+              writeAnnotateTag(sequence);
+              writeText(text,annotation+1,end,end,sequence);
+            }
+          else
+            writeText(text,start,end,end,sequences[tokens.tag(i)]);
+
+          rendered = end;
+        }
+
+      if (last)
+        writeText(text,rendered,tokens.length(),tokens.length(),"");
+
+      out.flush();
+    }
+
+  /**
+   * Ends rendering a source, and flushes the output.
+   */
+  public void end () throws IOException
+    {
+      out.flush();
+    }
+
+  /**
+   * Writes the annotation tag, followed by a slash in the specified
+   * escape sequence.
+   */
+  private void writeAnnotateTag (String sequence) throws IOException
+    {
+      out.write(annotateSequence);
+      out.write(annotateTag);
+      out.write(RESET);
+      out.write(sequence);
+      out.write('/');
+      if (sequence.length() > 0)
+        out.write(RESET);
+    }
+
+  /**
+   * Writes the characters of the specified text from the specified start
+   * index to the smaller of the specified end indices, in the specified
+   * escape sequence (if not empty) renewed on each line.
+   */
+  private void writeText (char[] text, int start, int end, int limit, String sequence)
+    throws IOException
+    {
+      end = Math.min(end,limit);
+
+      if (start == end)
+        return;
+
+      boolean highlighted = sequence.length() > 0;
+      int run = start;
+
+      if (highlighted)
+        out.write(sequence);
+
+      for (int i=start; i<end; i++)
+        {
+          char c = text[i];
+
+          if (c == '\n' && highlighted)
+            {
+              out.write(text,run,i-run);
+              out.write(RESET);
+              out.write('\n');
+              if (i+1 < end)
+                out.write(sequence);
+              else
+                highlighted = false;
+              run = i+1;
+            }
+          else if ((c < ' ' && c != '\t' && c != '\n' && c != '\r') || c == 0x7F)
+            {
+              out.write(text,run,i-run);    // show control characters in caret notation
+              out.write('^');
+              out.write(c ^ 0x40);
+              run = i+1;
+            }
+          else if (c >= 0x80 && c < 0xA0)
+            {
+              out.write(text,run,i-run);    // and C1 control characters as replacements
+              out.write('\uFFFD');
+              run = i+1;
+            }
+        }
+
+      out.write(text,run,end-run);
+
+      if (highlighted)
+        out.write(RESET);
+    }
+}
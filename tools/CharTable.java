@@ -0,0 +1,139 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class classifies characters for the lexers of <tt>Hilite</tt> and
+ * <tt>GenericHilite</tt>. The classes of the ASCII and Latin-1 characters
+ * (<tt>0</tt> to <tt>255</tt>) are precomputed once into a table of bit
+ * masks, so that each question about such a character is answered with a
+ * single load and mask. Any other code point, including a supplementary
+ * one (decoded from a surrogate pair), is classified by the corresponding
+ * code-point methods of <tt>Character</tt>; so is <tt>-1</tt> (the end of
+ * the input), which is in no class.
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ *
+ * @version     Last modified on Sat Oct 17 09:44:18 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+public class CharTable
+{
+  /**
+   * The character classes (bit masks).
+   */
+  final static int IDENTIFIER_START  = 1;
+  final static int IDENTIFIER_PART   = 2;
+  final static int DIGIT             = 4;
+  final static int LETTER            = 8;
+  final static int UPPER_CASE        = 16;
+  final static int LOWER_CASE        = 32;
+  final static int LOWER_CASE_LETTER = 64;
+
+  /**
+   * The classes of the characters <tt>0</tt> to <tt>255</tt>.
+   */
+  private final static byte[] TABLE = new byte[256];
+
+  static
+    {
+      for (int c=0; c<TABLE.length; c++)
+        {
+          int classes = 0;
+
+          if (Character.isJavaIdentifierStart(c)) classes |= IDENTIFIER_START;
+          if (Character.isJavaIdentifierPart(c))  classes |= IDENTIFIER_PART;
+          if (Character.isDigit(c))               classes |= DIGIT;
+          if (Character.isLetter(c))              classes |= LETTER;
+          if (Character.isUpperCase(c))           classes |= UPPER_CASE;
+          if (Character.isLowerCase(c))           classes |= LOWER_CASE;
+          if (Character.isLetter(c) && Character.isLowerCase(c))
+            classes |= LOWER_CASE_LETTER;
+
+          TABLE[c] = (byte)classes;
+        }
+    }
+
+  /**
+   * Returns true iff the specified code point is in the table's range.
+   */
+  private static boolean inTable (int c)
+    {
+      return (c & ~0xFF) == 0;
+    }
+
+  /**
+   * Returns true iff the specified code point is a legal start for a Java identifier.
+   */
+  public final static boolean isIdentifierStart (int c)
+    {
+      return inTable(c)
+        ? (TABLE[c] & IDENTIFIER_START) != 0
+        : c > 0 && Character.isJavaIdentifierStart(c);
+    }
+
+  /**
+   * Returns true iff the specified code point is a legal part of a Java identifier.
+   */
+  public final static boolean isIdentifierPart (int c)
+    {
+      return inTable(c)
+        ? (TABLE[c] & IDENTIFIER_PART) != 0
+        : c > 0 && Character.isJavaIdentifierPart(c);
+    }
+
+  /**
+   * Returns true iff the specified code point is a numerical digit.
+   */
+  public final static boolean isDigit (int c)
+    {
+      return inTable(c)
+        ? (TABLE[c] & DIGIT) != 0
+        : c > 0 && Character.isDigit(c);
+    }
+
+  /**
+   * Returns true iff the specified code point is an alphabetical character.
+   */
+  public final static boolean isLetter (int c)
+    {
+      return inTable(c)
+        ? (TABLE[c] & LETTER) != 0
+        : c > 0 && Character.isLetter(c);
+    }
+
+  /**
+   * Returns true iff the specified code point is an uppercase character.
+   */
+  public final static boolean isUpperCase (int c)
+    {
+      return inTable(c)
+        ? (TABLE[c] & UPPER_CASE) != 0
+        : c > 0 && Character.isUpperCase(c);
+    }
+
+  /**
+   * Returns true iff the specified code point is a lowercase character.
+   */
+  public final static boolean isLowerCase (int c)
+    {
+      return inTable(c)
+        ? (TABLE[c] & LOWER_CASE) != 0
+        : c > 0 && Character.isLowerCase(c);
+    }
+
+  /**
+   * Returns true iff the specified code point is a lowercase letter.
+   */
+  public final static boolean isLowerCaseLetter (int c)
+    {
+      return inTable(c)
+        ? (TABLE[c] & LOWER_CASE_LETTER) != 0
+        : c > 0 && Character.isLetter(c) && Character.isLowerCase(c);
+    }
+}
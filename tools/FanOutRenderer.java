@@ -0,0 +1,179 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class renders the token streams of <tt>Hilite</tt> and
+ * <tt>GenericHilite</tt> with several renderers at once, each writing to
+ * its own output, so that a source rendered in several formats is read
+ * and lexed only once. Since a renderer only reads the token stream, each
+ * chunk of tokens is simply passed on to every renderer in turn.
+ * <p>
+ * This class also names the formats in which <tt>HiliteCommand</tt> may
+ * write each file (see <tt>parseFormats</tt>), along with the extensions
+ * of the files written in each:
+ * <ul>
+ * <li><tt>html</tt>&nbsp;&nbsp; HTML (with inline styles, unless in CSS
+ *     class mode), in <tt>.html</tt> files
+ * <li><tt>chtml</tt>&nbsp;&nbsp; HTML with CSS classes, in <tt>.c.html</tt> files
+ * <li><tt>json</tt>&nbsp;&nbsp; token offsets (see <tt>JsonRenderer</tt>),
+ *     in <tt>.json</tt> files
+ * <li><tt>jsonl</tt>&nbsp;&nbsp; token spans as JSON lines, in
+ *     <tt>.jsonl</tt> files
+ * <li><tt>text</tt>&nbsp;&nbsp; plain text with markers (see
+ *     <tt>MarkerRenderer</tt>), in <tt>.tokens.txt</tt> files
+ * <li><tt>ansi</tt>&nbsp;&nbsp; text with ANSI escape sequences in 256
+ *     colors (see <tt>AnsiRenderer</tt>), in <tt>.ansi</tt> files
+ * </ul>
+ *
+ * @see         TokenRenderer
+ * @see         Hilite
+ * @see         GenericHilite
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 17:25:35 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class FanOutRenderer implements TokenRenderer
+{
+  /**
+   * The output formats, indexing the tables below.
+   */
+  public final static int HTML  = 0;
+  public final static int CHTML = 1;
+  public final static int JSON  = 2;
+  public final static int JSONL = 3;
+  public final static int TEXT  = 4;
+  public final static int ANSI  = 5;
+
+  /**
+   * The names of the output formats.
+   */
+  final static String[] FORMATS = { "html", "chtml", "json", "jsonl", "text", "ansi" };
+
+  /**
+   * The extensions of the files written in each output format.
+   */
+  final static String[] EXTENSIONS = { ".html", ".c.html", ".json", ".jsonl", ".tokens.txt", ".ansi" };
+
+  /**
+   * Returns the output formats named in the specified comma-separated list
+   * (<i>e.g.</i>, <tt>html,json</tt>), in order and without duplicates.
+   * @throws IllegalArgumentException if a format is unknown, or none is named
+   */
+  public static int[] parseFormats (String list)
+    {
+      String[] names = list.split(",");
+      int[] formats = new int[names.length];
+      int count = 0;
+
+      for (int i=0; i<names.length; i++)
+        {
+          int format = -1;
+
+          for (int j=0; j<FORMATS.length; j++)
+            if (FORMATS[j].equals(names[i].trim()))
+              format = j;
+
+          if (format < 0)
+            throw new IllegalArgumentException("Unknown output format: "+names[i]);
+
+          boolean duplicate = false;
+          for (int j=0; j<count; j++)
+            duplicate |= (formats[j] == format);
+
+          if (!duplicate)
+            formats[count++] = format;
+        }
+
+      if (count == 0)
+        throw new IllegalArgumentException("No output format selected");
+
+      int[] selected = new int[count];
+      System.arraycopy(formats,0,selected,0,count);
+      return selected;
+    }
+
+  /**
+   * Returns the extension of the files written in the specified format.
+   */
+  public static String extension (int format)
+    {
+      return EXTENSIONS[format];
+    }
+
+  /**
+   * Returns the specified output file name with its extension (that of the
+   * specified format if it has it, or else whatever follows its last dot)
+   * replaced by that of the specified other format.
+   */
+  public static String rename (String fileName, int format, int otherFormat)
+    {
+      String prefix = fileName;
+
+      if (fileName.endsWith(EXTENSIONS[format]))
+        prefix = fileName.substring(0,fileName.length()-EXTENSIONS[format].length());
+      else if (fileName.lastIndexOf('.') > 0)
+        prefix = fileName.substring(0,fileName.lastIndexOf('.'));
+
+      return prefix+EXTENSIONS[otherFormat];
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * The renderers.
+   */
+  private TokenRenderer[] renderers = new TokenRenderer[0];
+
+  /**
+   * Adds the specified renderer.
+   */
+  public void add (TokenRenderer renderer)
+    {
+      renderers = Arrays.copyOf(renderers,renderers.length+1);
+      renderers[renderers.length-1] = renderer;
+    }
+
+  /**
+   * Returns the number of renderers.
+   */
+  public int size ()
+    {
+      return renderers.length;
+    }
+
+  /**
+   * Starts rendering the source with the specified name with each renderer.
+   */
+  public void start (String name) throws IOException
+    {
+      for (int i=0; i<renderers.length; i++)
+        renderers[i].start(name);
+    }
+
+  /**
+   * Renders the tokens of the specified stream with each renderer.
+   */
+  public void render (TokenStream tokens, boolean last) throws IOException
+    {
+      for (int i=0; i<renderers.length; i++)
+        renderers[i].render(tokens,last);
+    }
+
+  /**
+   * Ends rendering the source with each renderer.
+   */
+  public void end () throws IOException
+    {
+      for (int i=0; i<renderers.length; i++)
+        renderers[i].end();
+    }
+}
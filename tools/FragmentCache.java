@@ -0,0 +1,208 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This is a cache of the HTML fragments of short highlighted tokens
+ * (<i>e.g.</i>, <tt>public</tt>, <tt>String</tt>, <tt>{</tt>), so that the
+ * keywords and names that recur throughout a source are each written in a
+ * single write of their opening tag and escaped text, rather than
+ * rebuilt each time. A fragment is keyed by the opening tag it starts with
+ * (which depends on the token's type, the theme, and whether CSS classes
+ * are used) and the token's text, which is looked up directly on a range
+ * of characters, as in <tt>KeywordTable</tt>.
+ * <p>
+ * The cache is shared by all the renderers of a run, in all threads: it is
+ * a fixed-size table where each fragment may go in one slot only, the slot
+ * its key hashes to, replacing any other fragment there. Since fragments
+ * are never modified once made, looking them up and storing them need no
+ * locking: a renderer sees either a complete fragment or none (in which
+ * case it makes its own). The numbers of hits and misses are counted by
+ * each renderer, and added to those of the cache once it is done with a
+ * file.
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ * @see         KeywordTable
+ * @see         HiliteMetrics
+ *
+ * @version     Last modified on Sat Oct 17 16:07:45 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FragmentCache
+{
+  /**
+   * The length of the longest token whose fragment is cached.
+   */
+  public final static int MAX_LENGTH = 32;
+
+  /**
+   * The cache shared by <tt>Hilite</tt> and <tt>GenericHilite</tt>.
+   */
+  public final static FragmentCache SHARED = new FragmentCache(4096);
+
+  /**
+   * The HTML fragment of a token: its opening tag followed by its escaped
+   * text.
+   */
+  public final static class Fragment
+    {
+      /**
+       * The opening tag, and the token's characters.
+       */
+      final String openTag;
+      final char[] text;
+
+      /**
+       * The opening tag followed by the escaped text.
+       */
+      public final String html;
+
+      Fragment (String openTag, char[] text, String html)
+        {
+          this.openTag = openTag;
+          this.text = text;
+          this.html = html;
+        }
+
+      /**
+       * Returns the index in <tt>html</tt> where the escaped text starts.
+       */
+      public final int textStart ()
+        {
+          return openTag.length();
+        }
+    }
+
+  /**
+   * The fragment in each slot (or <tt>null</tt>).
+   */
+  private final Fragment[] slots;
+
+  /**
+   * The number of slots minus one (the number of slots is a power of two).
+   */
+  private final int mask;
+
+  /**
+   * The numbers of hits and misses counted so far.
+   */
+  private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+  /**
+   * Constructs a cache holding at most the specified number of fragments
+   * (rounded up to a power of two).
+   */
+  public FragmentCache (int size)
+    {
+      int slotCount = Integer.highestOneBit(Math.max(size-1,1))*2;
+
+      slots = new Fragment[slotCount];
+      mask = slotCount-1;
+    }
+
+  /**
+   * Returns the hash code of the specified opening tag and range of
+   * characters.
+   */
+  private static int hash (String openTag, char[] chars, int start, int length)
+    {
+      int h = System.identityHashCode(openTag) + length;
+
+      for (int i = start, end = start+length; i < end; i++)
+        h = h*31 + chars[i];
+
+      return h ^ (h >>> 16);
+    }
+
+  /**
+   * Returns the fragment for the specified opening tag (compared by
+   * identity) and range of characters, or <tt>null</tt> if it is not
+   * cached.
+   */
+  public final Fragment get (String openTag, char[] chars, int start, int length)
+    {
+      Fragment fragment = slots[hash(openTag,chars,start,length) & mask];
+
+      if (fragment == null || fragment.openTag != openTag || fragment.text.length != length)
+        return null;
+
+      for (int i = 0; i < length; i++)
+        if (fragment.text[i] != chars[start+i])
+          return null;
+
+      return fragment;
+    }
+
+  /**
+   * Caches and returns the fragment for the specified opening tag and
+   * range of characters, with the specified escaped text.
+   */
+  public final Fragment put (String openTag, char[] chars, int start, int length, String escaped)
+    {
+      char[] text = new char[length];
+      System.arraycopy(chars,start,text,0,length);
+
+      Fragment fragment = new Fragment(openTag,text,openTag+escaped);
+      slots[hash(openTag,chars,start,length) & mask] = fragment;
+      return fragment;
+    }
+
+  /**
+   * Adds the specified numbers of hits and misses to those of this cache.
+   */
+  public final void count (long hitCount, long missCount)
+    {
+      hits.addAndGet(hitCount);
+      misses.addAndGet(missCount);
+    }
+
+  /**
+   * Returns the number of hits counted so far.
+   */
+  public final long hits ()
+    {
+      return hits.get();
+    }
+
+  /**
+   * Returns the number of misses counted so far.
+   */
+  public final long misses ()
+    {
+      return misses.get();
+    }
+
+  /**
+   * Returns the hit rate (between 0 and 1) of the specified numbers of hits
+   * and misses.
+   */
+  public static double hitRate (long hitCount, long missCount)
+    {
+      return (hitCount+missCount == 0) ? 0 : (double)hitCount/(hitCount+missCount);
+    }
+
+  /**
+   * Returns the number of cached fragments, and the numbers of hits and
+   * misses with the hit rate.
+   */
+  public String toString ()
+    {
+      int count = 0;
+      for (int i=0; i<slots.length; i++)
+        if (slots[i] != null)
+          count++;
+
+      long h = hits(), m = misses();
+
+      return count+" fragments, "+h+" hits, "+m+" misses ("+
+             String.format(Locale.ROOT,"%.1f",100*hitRate(h,m))+"% hit rate)";
+    }
+}
@@ -7,7 +7,12 @@ package hlt.language.tools;
 /**
  * This is a tool that beautifies the presentation of code.  It is meant
  * to recognize comments and format the information that they provide in
- * HTML. It may be customized for a specific syntax.
+ * HTML. It may be customized for a specific syntax, by a language profile
+ * file setting its keywords, identifiers, numbers, comments, strings, and
+ * brackets (see <tt>LanguageProfile</tt>); by default, it highlights a
+ * Java-like syntax.
+ *
+ * @see         LanguageProfile
  *
  * @version     Last modified on Fri Aug 03 04:30:04 2018 by hak
  * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
@@ -15,14 +20,16 @@ package hlt.language.tools;
  */
 
 import java.io.*;                       // Needed, obviously...
-import java.util.HashMap;               // For the keywords
+import java.util.HashMap;               // For the syntaxDoc tags
 import java.util.Properties;            // For the configuration
 import java.util.Iterator;              // For table iteration
 import java.util.Date;                  // For file stamping
+import java.util.Arrays;                // For growing the input buffer
+import java.util.concurrent.atomic.AtomicLong; // For the CSS class savings
 import hlt.language.io.FileTools;       // For file names
 import hlt.language.util.ArrayList;     // For the syntaxDoc tag definitions
 
-public class GenericHilite
+public class GenericHilite implements TokenRenderer, PageRenderer.Pageable
 {
   //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\\
 
@@ -41,20 +48,224 @@ public class GenericHilite
    */
   PushbackReader input;         
 
+  /**
+   * When true (the default), each input file is read whole into a
+   * character buffer and scanned from there with index arithmetic,
+   * rather than one character at a time through a pushback reader.
+   */
+  static boolean bufferInput = true;
+
+  /**
+   * Selects whether input files are read whole into a buffer.
+   */
+  public static void setBufferInput (boolean flag)
+    {
+      bufferInput = flag;
+    }
+
+  /**
+   * When true, the bytes allocated while hiliting each file are
+   * measured and reported along with the number of tokens read.
+   */
+  static boolean countAllocations = false;
+
+  /**
+   * Selects whether allocations are measured and reported.
+   */
+  public static void setCountAllocations (boolean flag)
+    {
+      countAllocations = flag;
+    }
+
+  /**
+   * Bytes allocated while hiliting the input (if measured).
+   */
+  long allocatedBytes = -1;
+
+  /**
+   * When true, the metrics of hiliting each file are gathered (see
+   * <tt>HiliteMetrics</tt>).
+   */
+  static boolean collectMetrics = false;
+
+  /**
+   * Selects whether metrics are gathered.
+   */
+  public static void setCollectMetrics (boolean flag)
+    {
+      collectMetrics = flag;
+    }
+
+  /**
+   * Metrics of hiliting the input file (if gathered).
+   */
+  HiliteMetrics metrics;
+
+  /**
+   * When true, highlighted tokens are tagged with short CSS classes
+   * (<i>e.g.</i>, <tt>&lt;span class=k&gt;</tt>) defined once in the
+   * style sheet, rather than with inline colors and styles.
+   */
+  static boolean cssClasses = false;
+
+  /**
+   * Selects whether highlighted tokens are tagged with CSS classes.
+   */
+  public static void setCssClasses (boolean flag)
+    {
+      cssClasses = flag;
+    }
+
+  /**
+   * Whether this object, as an HTML renderer, tags highlighted tokens with
+   * CSS classes (initially, as selected for all with <tt>setCssClasses</tt>).
+   */
+  boolean classTags = cssClasses;
+
+  /**
+   * The number of source lines per page of the HTML output (see
+   * <tt>PageRenderer</tt>), or <tt>0</tt> to write it as a single page.
+   */
+  static int pageLines = 0;
+
+  /**
+   * Selects the number of source lines per page of the HTML output
+   * (<tt>0</tt> for a single page).
+   */
+  public static void setPageLines (int lines)
+    {
+      pageLines = lines;
+    }
+
+  /**
+   * Navigation links written before and after the source (when paginated).
+   */
+  String navigation = "";
+
+  /**
+   * When true, each line of the HTML output is marked with an anchor
+   * named after its number, and each HTML file is indexed by line (see
+   * <tt>LineIndex</tt>).
+   */
+  static boolean lineAnchors = false;
+
+  /**
+   * Selects whether the lines of the HTML output are anchored and indexed.
+   */
+  public static void setLineAnchors (boolean flag)
+    {
+      lineAnchors = flag;
+    }
+
+  /**
+   * The line index filtering the HTML output of this object, if its lines
+   * are anchored.
+   */
+  LineIndex lineIndex;
+
+  /**
+   * The formats in which input files are written (see
+   * <tt>FanOutRenderer</tt>): the first one into the output file, and each
+   * other one into a file of the same name with the extension of its
+   * format, all from a single reading of the input.
+   */
+  static int[] renderFormats = { FanOutRenderer.HTML };
+
+  /**
+   * Selects the formats in which input files are written (see
+   * <tt>FanOutRenderer.parseFormats</tt>).
+   */
+  public static void setRenderFormats (int[] formats)
+    {
+      renderFormats = formats;
+    }
+
+  /**
+   * Total number of characters saved by using CSS classes rather than
+   * inline tags, over all the files hilited so far.
+   */
+  private final static AtomicLong totalSavedChars = new AtomicLong();
+
+  /**
+   * Returns the total number of characters (<i>i.e.</i>, bytes, since tags
+   * are ASCII) saved by using CSS classes rather than inline tags, over all
+   * the files hilited so far in CSS class mode.
+   */
+  public static long savedChars ()
+    {
+      return totalSavedChars.get();
+    }
+
+  /**
+   * Opening and closing highlighting tags in use (inline or CSS classes).
+   */
+  String[] openTags, closeTags;
+
+  /**
+   * Number of characters saved in the current output by using CSS classes
+   * rather than inline tags.
+   */
+  long savedChars;
+
+  /**
+   * Numbers of the tokens of the current output whose HTML fragments were
+   * found, and not found, in the shared fragment cache.
+   */
+  long fragmentHits, fragmentMisses;
+
+  /**
+   * Tag of the highlighting span left open after the last highlighted
+   * token, or -1 if none. Its closing tag is deferred so that the next
+   * highlighted tokens with the same tag, and the whitespace in between,
+   * may share it.
+   */
+  int openTag = -1;
+
+  /**
+   * Whitespace read since the last highlighted token while its span is
+   * left open.
+   */
+  final StringBuilder pendingSpace = new StringBuilder();
+
+  /**
+   * Input characters when buffering the whole input.
+   */
+  char[] buffer;
+
+  /**
+   * Index in the buffer of the next character to read.
+   */
+  int position;
+
+  /**
+   * Number of characters in the buffer.
+   */
+  int limit;
+
   /**
    * Output file name.
    */
   String outputFileName;
 
+  /**
+   * Style file name (linked only in CSS class mode).
+   */
+  String styleFileName = "style.css";
+
   /**
    * Target directory.
    */
   String outputDir;
 
   /**
-   * File output writer.
+   * Output writer.
+   */
+  Writer output;                
+
+  /**
+   * True iff the output file was completely written.
    */
-  BufferedWriter output;                
+  boolean written = false;
 
   /**
    * Constructs a GenericHilite object with specified input file name, configuration
@@ -66,9 +277,44 @@ public class GenericHilite
    * @param clobber if <tt>true</tt>, overwrite existing files
    */
   public GenericHilite (String input, String configuration, String output, String dir, boolean clobber)
+    {
+      this(input,configuration,null,output,dir,clobber);
+    }
+
+  /**
+   * Constructs a GenericHilite object with specified input file name, configuration
+   * file name, language profile file name, output file name, etc...
+   * @param input name of file to highlight
+   * @param configuration name of configuration file (properties)
+   * @param profile name of language profile file (properties), or <tt>null</tt>
+   * @param output name of highlighted file
+   * @param dir directory name where to write the highlighted file
+   * @param clobber if <tt>true</tt>, overwrite existing files
+   */
+  public GenericHilite (String input, String configuration, String profile,
+                        String output, String dir, boolean clobber)
+    {
+      this(input,configuration,"style.css",profile,output,dir,clobber);
+    }
+
+  /**
+   * Constructs a GenericHilite object with specified input file name, configuration
+   * file name, CSS style file name, language profile file name, output file name, etc...
+   * @param input name of file to highlight
+   * @param configuration name of configuration file (properties)
+   * @param stylefile name of the CSS style file linked from the output (in CSS class mode)
+   * @param profile name of language profile file (properties), or <tt>null</tt>
+   * @param output name of highlighted file
+   * @param dir directory name where to write the highlighted file
+   * @param clobber if <tt>true</tt>, overwrite existing files
+   */
+  public GenericHilite (String input, String configuration, String stylefile, String profile,
+                        String output, String dir, boolean clobber)
     {
       inputFileName = input;                    // set input
       configurationFileName = configuration;    // set configuration
+      styleFileName = stylefile;                // set css style file
+      profileFileName = profile;                // set profile
       outputFileName = output;                  // set output
       outputDir = dir;                          // set target directory
       hilite(clobber);                          // do the work
@@ -98,6 +344,74 @@ public class GenericHilite
       hilite(false);                            // do the work
     }
 
+  /**
+   * Constructs a GenericHilite object that renders sources with the
+   * specified configuration properties, without reading or writing any
+   * file (see <tt>render</tt>).
+   * @param configuration the configuration properties (colors and styles)
+   */
+  public GenericHilite (Properties configuration)
+    {
+      theme = new HiliteTheme(configuration);
+    }
+
+  /**
+   * Constructs a GenericHilite object that renders sources in the syntax of
+   * the specified language profile with the specified configuration
+   * properties, without reading or writing any file (see <tt>render</tt>).
+   * @param configuration the configuration properties (colors and styles)
+   * @param profile the language profile (lexical syntax)
+   */
+  public GenericHilite (Properties configuration, LanguageProfile profile)
+    {
+      theme = new HiliteTheme(configuration);
+      this.profile = profile;
+    }
+
+  /**
+   * Constructs a GenericHilite object that renders sources in the syntax of
+   * the specified language profile with the specified theme, without
+   * reading or writing any file (see <tt>render</tt>).
+   * @param theme the colors and styles
+   * @param profile the language profile (lexical syntax)
+   */
+  public GenericHilite (HiliteTheme theme, LanguageProfile profile)
+    {
+      this.theme = theme;
+      this.profile = profile;
+    }
+
+  /**
+   * Constructs a GenericHilite object that renders sources with the
+   * default colors and styles (see <tt>render</tt>).
+   */
+  public GenericHilite ()
+    {
+      theme = HiliteTheme.DEFAULT;
+    }
+
+  /**
+   * Returns true iff the output file was completely written.
+   */
+  public boolean wasWritten ()
+    {
+      return written;
+    }
+
+  /**
+   * The renderer of the pages of the output file, if paginated.
+   */
+  private PageRenderer pager;
+
+  /**
+   * Returns the number of pages of the output file, or <tt>0</tt> if it
+   * was not paginated.
+   */
+  public int pageCount ()
+    {
+      return (pager == null) ? 0 : pager.pageCount();
+    }
+
   /**
    * Returns the target directory.
    */
@@ -118,16 +432,39 @@ public class GenericHilite
         {
           try
             {
-              // if so, attach it to a buffered/pushback stream
-              input = new PushbackReader(new BufferedReader(new FileReader(inputFile)));
+              long start = System.nanoTime();
+              if (collectMetrics)
+                metrics = new HiliteMetrics(inputFileName);
+              configure();      // set colors, styles, and syntax
+
+              // if so, either read it whole into the input buffer
+              // or attach it to a buffered/pushback stream
+              if (bufferInput)
+                {
+                  Reader reader = new FileReader(inputFile);
+                  try
+                    {
+                      fillBuffer(reader,(int)inputFile.length());
+                    }
+                  finally
+                    {
+                      reader.close();
+                    }
+                }
+              else
+                input = pushbackReader(new FileReader(inputFile));
+              long read = System.nanoTime();
               // create output file stream
-              File outputFile = new File(dir()+outputFileName);
+              File outputFile = HiliteOutput.existingFile(dir()+outputFileName);
               /*start*/
-              if (!clobber && outputFile.exists()) // confirm if output file exists
+              if (!clobber && outputFile != null) // confirm if output file exists
                 {
-                  if (!Misc.askYesNo("*** File "+dir()+outputFileName+
-                                     " already exists; overwrite anyway"))
-                    throw new IOException("Aborting hiliting file "+inputFileName);
+                  synchronized (Hilite.promptLock) // one question at a time when hiliting in parallel
+                    {
+                      if (!Misc.askYesNo("*** File "+outputFile+
+                                         " already exists; overwrite anyway"))
+                        throw new IOException("Aborting hiliting file "+inputFileName);
+                    }
                 }
               /*end*/
               // NOTE: This following phony try/catch wrapper has no business being
@@ -142,14 +479,26 @@ public class GenericHilite
               // Java 1.2 bug to me. [Tue Mar 16 1999 -hak]
               try
                 { 
-                  output = new BufferedWriter(new FileWriter(outputFile));
+                  output = HiliteOutput.open(dir()+outputFileName,metrics);
                 }
               catch (IOException e)
                 {
-                  output = new BufferedWriter(new FileWriter(outputFile));
+                  output = HiliteOutput.open(dir()+outputFileName,metrics);
                 }
-              configure();      // set colors and styles
+              long allocated = countAllocations ? Misc.allocatedBytes() : -1;
+
               hiliteFile();     // process the file
+              written = true;
+
+              if (metrics != null)
+                metrics.finish(start,read,inputFile,dir()+outputFileName);
+
+              if (allocated >= 0)
+                {
+                  allocatedBytes = Misc.allocatedBytes() - allocated;
+                  System.out.println("*** Allocated "+allocatedBytes+" bytes for "+
+                                     tokenCount+" tokens in file "+FileTools.simpleName(inputFileName));
+                }
             }             
           catch (IOException e)
             {
@@ -165,217 +514,61 @@ public class GenericHilite
 
   //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
 
-  /**
-   * Static data definitions: keyword types and strings.
-   */
-  final static String MODIFIER = "modifier";
-  final static String TYPE     = "type";
-  final static String CONTROL  = "control";
-  final static String DECLARE  = "declare";
-  final static String LITERAL  = "literal"; 
-  final static String OTHER    = "other"; 
-
-  /**
-   * Storage for Syntax keywords (keyword -> keyword type).
-   */
-  final static HashMap syntaxWords = new HashMap();   
-
-  /**
-   * Stores a modifier word.
-   */
-  final static void jkw_m (String w)
-    {
-      syntaxWords.put(w,MODIFIER);
-    }
-  /**
-   * Stores a type word.
-   */
-  final static void jkw_t (String w)
-    {
-      syntaxWords.put(w,TYPE);
-    }
-  /**
-   * Stores a control word.
-   */
-  final static void jkw_c (String w)
-    {
-      syntaxWords.put(w,CONTROL);
-    }
-  /**
-   * Stores a declaration word.
-   */
-  final static void jkw_d (String w)
-    {
-      syntaxWords.put(w,DECLARE);
-    }
-  /**
-   * Stores a literal.
-   */
-  final static void jkw_l (String w)
-    {
-      syntaxWords.put(w,LITERAL);
-    }
-  /**
-   * Stores a `noneOfTheAbove'.
-   */
-  final static void jkw_o (String w)
-    {
-      syntaxWords.put(w,OTHER);
-    }    
-
-  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
-
-  /**
-   * Color and style parameters to be set to the configuration values or the default.
-   */
-  String FONT_SIZE, BACKGROUND_COLOR, SYNTAXDOC_BG_COLOR, SYNTAXDOC_TEXT_COLOR,
-         COMMENT_COLOR, BRACKET_COLOR, KEYWORD_COLOR, MODIFIER_COLOR, TYPE_COLOR,
-         CONTROL_COLOR, DECLARE_COLOR, LITERAL_COLOR, OTHER_COLOR, CLASS_COLOR,
-         CONSTANT_COLOR, NUMBER_COLOR, STRING_COLOR, TEXT_COLOR, ANNOTATE_COLOR,
-         ANNOTATE_TAG_COLOR, COMMENT_STYLE, BRACKET_STYLE, KEYWORD_STYLE,
-         MODIFIER_STYLE, TYPE_STYLE, CONTROL_STYLE, DECLARE_STYLE, LITERAL_STYLE,
-         OTHER_STYLE, CLASS_STYLE, CONSTANT_STYLE, NUMBER_STYLE, STRING_STYLE,
-         PLAIN_STYLE, ANNOTATE_STYLE, ANNOTATE_TAG;
-
-  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
-
   /**
    * Default configuration file name.
    */
   String configurationFileName = "Hilite.Configuration";
   /**
-   * Properties loaded from the configuration.
+   * The colors and styles.
    */
-  Properties configuration = new Properties();  
+  HiliteTheme theme;
 
   /**
-   * Gets the specified attribute from the configuration's properties.
-   * @param attribute the property's name
+   * Language profile file name (<tt>null</tt> for the default syntax).
    */
-  final String configure (String attribute)
-    {
-      return configuration.getProperty(attribute);      
-    }
-
+  String profileFileName;
   /**
-   * Gets the specified attribute to the value of configuration's
-   * properties if there is one (returning <tt>null</tt> when it is
-   * equal to <tt>\*</tt>). If there is not, returns the specified
-   * default value.
-   * @param attribute the property's name
-   * @param defaultValue the default value
+   * The lexical syntax.
    */
-  final String configure (String attribute, String defaultValue)
-    {
-      String value = configuration.getProperty(attribute);
-      return (value == null) ? defaultValue : (value.equals("*") ? null : value);
-    }
+  LanguageProfile profile = LanguageProfile.DEFAULT;
 
   /**
-   * Initiates the configuration of the highlighter by looking for a
-   * configuration file. If one is found, it loads it into the configuration
-   * properties.
+   * Sets the colors and styles to those of the configuration file, if
+   * there is one, or to the default ones otherwise, and the lexical syntax
+   * to that of the language profile file, if one is specified. Each file
+   * is loaded only once for all the highlighters that share it.
    */
   final void configure ()
     {
-      File configurationFile = new File(configurationFileName);
-      //      System.out.println("*** Configuration file:\t"+configurationFileName);
-      if (configurationFile.exists())
-        {
-          try
-            {
-              configuration.load(new FileInputStream(configurationFile));
-            } catch (IOException e)
-              {
-                System.err.println(e+configurationFileName);
-              }
-        }
-      else
-        System.err.println("*** File "+configurationFileName+" not found (using defaults)");
-      configureValues();
-    }
-
-  /**
-   * Configure the color and style parameters.
-   */
-  final void configureValues ()
-    {
-      // fonts
-      FONT_SIZE            = configure("FONT_SIZE");
-
-      // colors
-      BACKGROUND_COLOR     = configure("BACKGROUND_COLOR","#CCCFF");
-      SYNTAXDOC_BG_COLOR   = configure("SYNTAXDOC_BG_COLOR","WHITE");
-      SYNTAXDOC_TEXT_COLOR = configure("SYNTAXDOC_TEXT_COLOR","BLACK");
-      COMMENT_COLOR        = configure("COMMENT_COLOR","#777777");
-      BRACKET_COLOR        = configure("BRACKET_COLOR","GRAY");
-      KEYWORD_COLOR        = configure("KEYWORD_COLOR","BLUE");
-      MODIFIER_COLOR       = configure("MODIFIER_COLOR","PURPLE");
-      TYPE_COLOR           = configure("TYPE_COLOR","BLUE");
-      CONTROL_COLOR        = configure("CONTROL_COLOR","BROWN");
-      DECLARE_COLOR        = configure("DECLARE_COLOR","RED");
-      LITERAL_COLOR        = configure("LITERAL_COLOR","GREEN");
-      OTHER_COLOR          = configure("OTHER_COLOR",KEYWORD_COLOR);
-      CLASS_COLOR          = configure("CLASS_COLOR","BLUE");
-      CONSTANT_COLOR       = configure("CONSTANT_COLOR","#009900");      // leaf green
-      NUMBER_COLOR         = configure("NUMBER_COLOR",LITERAL_COLOR);
-      STRING_COLOR         = configure("STRING_COLOR",LITERAL_COLOR);
-      TEXT_COLOR           = configure("TEXT_COLOR");
-      ANNOTATE_COLOR       = configure("ANNOTATE_COLOR","YELLOW");
-      ANNOTATE_TAG_COLOR   = configure("ANNOTATE_TAG_COLOR","RED");
-
-      // styles
-      COMMENT_STYLE        = configure("COMMENT_STYLE","EM");
-      BRACKET_STYLE        = configure("BRACKET_STYLE");
-      KEYWORD_STYLE        = configure("KEYWORD_STYLE","STRONG");
-      MODIFIER_STYLE       = configure("MODIFIER_STYLE",KEYWORD_STYLE);
-      TYPE_STYLE           = configure("TYPE_STYLE",KEYWORD_STYLE);
-      CONTROL_STYLE        = configure("CONTROL_STYLE",KEYWORD_STYLE);
-      DECLARE_STYLE        = configure("DECLARE_STYLE",KEYWORD_STYLE);
-      LITERAL_STYLE        = configure("LITERAL_STYLE");
-      OTHER_STYLE          = configure("OTHER_STYLE",KEYWORD_STYLE);
-      CLASS_STYLE          = configure("CLASS_STYLE",KEYWORD_STYLE);
-      CONSTANT_STYLE       = configure("CONSTANT_STYLE");
-      NUMBER_STYLE         = configure("NUMBER_STYLE");
-      STRING_STYLE         = configure("STRING_STYLE");
-      PLAIN_STYLE          = configure("PLAIN_STYLE");
-      ANNOTATE_STYLE       = configure("ANNOTATE_STYLE");
-      ANNOTATE_TAG         = configure("ANNOTATE_TAG","PLEASE READ");
-
-      // annotations
-      annotateTag          = "<BLINK><SPAN STYLE=\"COLOR:"+ANNOTATE_TAG_COLOR+
-                             "\" SIZE=-1><B>"+ANNOTATE_TAG+"</B></SPAN></BLINK>/";
+      theme = HiliteTheme.load(configurationFileName);
+      if (profileFileName != null)
+        profile = LanguageProfile.load(profileFileName);
     }
 
   //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
 
   /**
-   * Returns a keyword's highlight color as per its type.
+   * Returns the index of a keyword's highlighting tags as per its type.
    */
-  final String keywordColor ()
+  final int keywordTag ()
     {
-      if (keywordType == MODIFIER) return MODIFIER_COLOR;
-      if (keywordType == TYPE)     return TYPE_COLOR;
-      if (keywordType == CONTROL)  return CONTROL_COLOR;
-      if (keywordType == DECLARE)  return DECLARE_COLOR;
-      if (keywordType == LITERAL)  return LITERAL_COLOR;
-      if (keywordType == OTHER)    return OTHER_COLOR;
-      return KEYWORD_COLOR;
+      return keywordType.intValue();
     }    
 
   /**
-   * Returns a keyword's highlight style as per its type.
+   * Returns the index of the current token's highlighting tags.
    */
-  final String keywordStyle ()
+  final int tokenTag ()
     {
-      if (keywordType == MODIFIER) return MODIFIER_STYLE;
-      if (keywordType == TYPE)     return TYPE_STYLE;
-      if (keywordType == CONTROL)  return CONTROL_STYLE;
-      if (keywordType == DECLARE)  return DECLARE_STYLE;
-      if (keywordType == LITERAL)  return LITERAL_STYLE;
-      if (keywordType == OTHER)    return OTHER_STYLE;
-      return KEYWORD_STYLE;
-    }    
+      switch (tokenType)
+        {
+        case COMMENT:
+          return annotateMode ? HiliteTheme.ANNOTATION : COMMENT;
+        case KEYWORD:
+          return keywordTag();
+        }
+      return tokenType;
+    }
 
   //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
 
@@ -404,13 +597,27 @@ public class GenericHilite
   boolean isConstantIdentifier; 
 
   /**
-   * The current token word.
+   * The tokens read from the input, in the input text.
+   */
+  TokenStream tokenStream = new TokenStream();
+  /**
+   * The index in the input text of the start of the current token.
+   */
+  int tokenStart;
+  /**
+   * The renderer of the tokens: this object itself, as HTML, unless
+   * another renderer is set.
    */
-  StringBuilder tokenWord;
+  TokenRenderer renderer = this;
   /**
-   * The keyword type, if the current token word is a keyword.
+   * The number of tokens read so far from the input.
    */
-  String keywordType;
+  int tokenCount;
+  /**
+   * The index of the keyword's highlighting tags, if the current token
+   * word is a keyword.
+   */
+  Integer keywordType;
   /**
    * The current token character.
    */
@@ -421,17 +628,17 @@ public class GenericHilite
   int tokenType;        
 
   /**
-   * Used to indicate that the comment is an annotation.
+   * The comment delimiter of the current token, if it is a comment.
    */
-  int annotateChar = '$';
+  int delimiter;
   /**
-   * True whenever reading an annotation comment.
+   * Characters read ahead when matching a comment opener on a pushback reader.
    */
-  boolean annotateMode = false;
+  char[] lookahead;
   /**
-   * String indicating that the comment is an annotation.
+   * True whenever reading an annotation comment.
    */
-  String annotateTag;
+  boolean annotateMode = false;
 
   /**
    * If true, format syntaxDoc comments.
@@ -453,22 +660,6 @@ public class GenericHilite
    */
   static 
     {
-      // Filling the syntaxWords table:
-
-      jkw_m("abstract"); jkw_t("boolean");    jkw_c("break");        jkw_t("byte");
-      jkw_c("case");     jkw_c("catch");      jkw_t("char");         jkw_d("class");
-      jkw_d("const");    jkw_c("continue");   jkw_c("default");      jkw_c("do");
-      jkw_t("double");   jkw_c("else");       jkw_d("extends");      jkw_m("final");
-      jkw_c("finally");  jkw_t("float");      jkw_c("for");          jkw_c("goto");
-      jkw_c("if");       jkw_d("implements"); jkw_d("import");       jkw_o("instanceof");
-      jkw_t("int");      jkw_d("interface");  jkw_t("long");         jkw_m("native");
-      jkw_o("new");      jkw_d("package");    jkw_m("private");      jkw_m("protected");
-      jkw_m("public");   jkw_c("return");     jkw_t("short");        jkw_m("static");
-      jkw_o("super");    jkw_c("switch");     jkw_m("synchronized"); jkw_o("this");
-      jkw_c("throw");    jkw_d("throws");     jkw_m("transient");    jkw_c("try");
-      jkw_t("void");     jkw_m("volatile");   jkw_c("while");        jkw_l("null");
-      jkw_l("true");     jkw_l("false");
-
       // Filling the syntaxDocTagsLabels table:
 
       syntaxDocTagsLabels.put("deprecated","<BLINK>Deprecated!</BLINK>");
@@ -485,44 +676,46 @@ public class GenericHilite
    */
   final boolean isAnnotateChar() 
     {
-      return (tokenChar == annotateChar);
+      return (tokenChar == profile.annotateChar);
     }
 
   /**
-   * Returns true iff the given character is a round, curly, or square bracket.
+   * Returns true iff the given character is a bracket.
    */
-  final static boolean isBracket(int c)
+  final boolean isBracket(int c)
     {
-      switch (c)
-        {
-        case '{': case '}':
-        case '(': case ')':
-        case '[': case ']':
-          return true;
-        }
-      return false;
+      return profile.isIn(LanguageProfile.BRACKET,c);
     }
 
   /**
-   * Returns true iff the given character is a single or double quote.
+   * Returns true iff the given character is a quote.
    */
-  final static boolean isQuote(int c)
+  final boolean isQuote(int c)
     {
-      switch (c)
-        {
-//         case '\'':
-	case '"':
-          return true;
-        }
+      return profile.isIn(LanguageProfile.QUOTE,c);
+    }
+
+  /**
+   * Returns true iff the given character is whitespace (which may be
+   * merged into an open highlighting span).
+   */
+  final static boolean isSpace(int c)
+    {
+      switch (c)
+        {
+        case ' ': case '\t':
+        case '\n': case '\r':
+          return true;
+        }
       return false;
     }
 
   /**
-   * Returns true iff the given string is a Syntax keyword.
+   * Returns true iff the current token is a Syntax keyword.
    */
   final boolean isKeyword ()
     {
-      keywordType = (String)syntaxWords.get(tokenWord.toString());
+      keywordType = (Integer)profile.keywords.get(inputText(),tokenStart,offset()-tokenStart);
       return (keywordType != null);
     }
 
@@ -531,7 +724,7 @@ public class GenericHilite
    */
   final boolean isIdentifierStart (int c)
     {
-      return Character.isJavaIdentifierStart((char)c);
+      return profile.isIn(LanguageProfile.IDENTIFIER_START,c);
     }
 
   /**
@@ -539,7 +732,23 @@ public class GenericHilite
    */
   final boolean isIdentifierPart (int c)
     {
-      return Character.isJavaIdentifierPart((char)c);
+      return profile.isIn(LanguageProfile.IDENTIFIER_PART,c);
+    }
+
+  /**
+   * Returns true iff the given character is a legal start for a Syntax number.
+   */
+  final boolean isNumberStart (int c)
+    {
+      return profile.isIn(LanguageProfile.NUMBER_START,c);
+    }
+
+  /**
+   * Returns true iff the given character is a legal part of a Syntax number.
+   */
+  final boolean isNumberPart (int c)
+    {
+      return profile.isIn(LanguageProfile.NUMBER_PART,c);
     }
 
   /**
@@ -547,7 +756,7 @@ public class GenericHilite
    */
   final boolean isDigit (int c)
     {
-      return Character.isDigit((char)c);
+      return CharTable.isDigit(c);
     }
 
   /**
@@ -555,7 +764,7 @@ public class GenericHilite
    */
   final boolean isLetter (int c)
     {
-      return Character.isLetter((char)c);
+      return CharTable.isLetter(c);
     }
 
   /**
@@ -563,7 +772,7 @@ public class GenericHilite
    */
   final boolean isUpperCase (int c)
     {
-      return Character.isUpperCase((char)c);
+      return CharTable.isUpperCase(c);
     }
 
   /**
@@ -571,13 +780,22 @@ public class GenericHilite
    */
   final boolean isLowerCase (int c)
     {
-      return Character.isLowerCase((char)c);
+      return CharTable.isLowerCase(c);
     }
 
   /**
-   * Returns the HTML encoding of the given character as a string.
+   * Returns true iff the given character is a lowercase letter.
    */
-  final String htmlCodeString (int c)
+  final boolean isLowerCaseLetter (int c)
+    {
+      return CharTable.isLowerCaseLetter(c);
+    }
+
+  /**
+   * Returns the HTML encoding of the given character if it needs one,
+   * or <tt>null</tt> otherwise.
+   */
+  final static String htmlCode (int c)
     {
       switch (c)
         {
@@ -585,15 +803,147 @@ public class GenericHilite
         case '>': return "&gt;";
         case '&': return "&amp;";
         }
-      return String.valueOf((char)c);
+      return null;
+    }
+
+  /**
+   * Writes the HTML encoding of the specified characters to the output file.
+   */
+  final void writeText (char[] text, int start, int end) throws IOException
+    {
+      int run = start;
+
+      for (int i=start; i<end; i++)
+        {
+          String code = htmlCode(text[i]);
+
+          if (code != null)
+            {
+              output.write(text,run,i-run);
+              output.write(code);
+              run = i+1;
+            }
+        }
+
+      output.write(text,run,end-run);
+    }
+
+  /**
+   * Reads all the characters of the specified reader into the input buffer,
+   * which is first allocated with the specified size.
+   */
+  final void fillBuffer (Reader reader, int size) throws IOException
+    {
+      buffer = new char[Math.max(size,1024)];
+      position = limit = 0;
+
+      for (int n; (n = reader.read(buffer,limit,buffer.length-limit)) != -1;)
+        if ((limit += n) == buffer.length)
+          buffer = Arrays.copyOf(buffer,2*buffer.length);
+
+      tokenStream.reset(buffer,limit);
+    }
+
+  /**
+   * Copies the specified characters into the input buffer.
+   */
+  final void fillBuffer (CharSequence source)
+    {
+      limit = source.length();
+      buffer = new char[limit];
+      position = 0;
+
+      if (source instanceof String)
+        ((String)source).getChars(0,limit,buffer,0);
+      else
+        for (int i=0; i<limit; i++)
+          buffer[i] = source.charAt(i);
+
+      tokenStream.reset(buffer,limit);
+    }
+
+  /**
+   * Returns a buffered pushback reader reading from the specified reader,
+   * that can push back a surrogate pair or the characters read ahead of a
+   * comment opener, and that records what it reads in the token stream.
+   */
+  final PushbackReader pushbackReader (Reader in)
+    {
+      int size = Math.max(2,profile.maxOpenerLength);
+
+      if (lookahead == null || lookahead.length < size)
+        lookahead = new char[size];
+
+      return tokenStream.recorder(new BufferedReader(in),size);
+    }
+
+  /**
+   * Closes the input stream, or releases the input buffer.
+   */
+  final void closeInput () throws IOException
+    {
+      if (buffer != null)
+        buffer = null;
+      else
+        input.close();
+
+      tokenStream.release();
+    }
+
+  /**
+   * Returns the input text: the input buffer, or the text recorded from
+   * the input stream.
+   */
+  final char[] inputText ()
+    {
+      return (buffer != null) ? buffer : tokenStream.text();
+    }
+
+  /**
+   * Returns the index in the input text of the next character to read.
+   */
+  final int offset ()
+    {
+      return (buffer != null) ? position : tokenStream.length();
+    }
+
+  /**
+   * Returns the next character in the input stream, or -1 at its end.
+   */
+  final int readChar () throws IOException
+    {
+      if (buffer != null)
+        return (position < limit) ? buffer[position++] : -1;
+
+      return input.read();
+    }
+
+  /**
+   * Returns the next character in the input stream without consuming it.
+   */
+  final int peekChar () throws EOFException, IOException
+    {
+      if (buffer != null)
+        {
+          if (position == limit)
+            throw new EOFException();
+          return buffer[position];
+        }
+
+      int c = nextChar();
+      input.unread(c);
+      return c;
     }
 
   /**
-   * Writes the current token character's HTML encoding to the output file.
+   * Consumes the character last returned by <tt>peekChar()</tt>.
    */
-  final void writeTokenChar () throws IOException
+  final void skipChar () throws IOException
     {
-      output.write(htmlCodeString(tokenChar));
+      if (buffer != null)
+        position++;
+      else
+        input.read();
     }
 
   /**
@@ -601,60 +951,158 @@ public class GenericHilite
    */
   final int nextChar () throws EOFException, IOException
     {
-      int c = input.read();
+      int c = readChar();
 //       System.err.print(java.lang.Character.toString((char)c));
       if (c == -1) throw new EOFException();
       return c;
     }
 
   /**
-   * Reads an identifier off the input stream into the current token word.
-   * Determines what kind of identifier that is (class name, constant name,
-   * or other).
+   * Returns the code point starting with the current token character: the
+   * character itself, unless it is a high surrogate followed in the input
+   * by a low surrogate, in which case it is the pair's code point (the low
+   * surrogate is not consumed).
+   */
+  final int tokenCodePoint () throws IOException
+    {
+      if (!Character.isHighSurrogate((char)tokenChar))
+        return tokenChar;
+
+      int low;
+
+      if (buffer != null)
+        low = (position < limit) ? buffer[position] : -1;
+      else if ((low = input.read()) != -1)
+        input.unread(low);
+
+      return (low != -1 && Character.isLowSurrogate((char)low))
+        ? Character.toCodePoint((char)tokenChar,(char)low)
+        : tokenChar;
+    }
+
+  /**
+   * Returns the code point at the specified position of the input buffer,
+   * decoding the surrogate pair there if there is one.
+   */
+  final int bufferCodePoint (int i)
+    {
+      char c = buffer[i];
+
+      if (Character.isHighSurrogate(c) && i+1 < limit && Character.isLowSurrogate(buffer[i+1]))
+        return Character.toCodePoint(c,buffer[i+1]);
+
+      return c;
+    }
+
+  /**
+   * Reads the next code point off the input stream, decoding a surrogate
+   * pair if there is one; returns -1 at the end of the input.
+   */
+  final int readCodePoint () throws IOException
+    {
+      int c = input.read();
+
+      if (c != -1 && Character.isHighSurrogate((char)c))
+        {
+          int low = input.read();
+
+          if (low != -1 && Character.isLowSurrogate((char)low))
+            return Character.toCodePoint((char)c,(char)low);
+
+          if (low != -1)
+            input.unread(low);
+        }
+
+      return c;
+    }
+
+  /**
+   * Pushes the specified code point (if not -1) back onto the input stream.
+   */
+  final void unreadCodePoint (int c) throws IOException
+    {
+      if (c == -1)
+        return;
+
+      if (Character.isSupplementaryCodePoint(c))
+        {
+          input.unread(Character.lowSurrogate(c));
+          input.unread(Character.highSurrogate(c));
+        }
+      else
+        input.unread(c);
+    }
+
+  /**
+   * Reads an identifier off the input stream. Determines what kind of
+   * identifier that is (class name, constant name, or other).
    */
   final void readIdentifier () throws IOException
     {
-      tokenWord = new StringBuilder(String.valueOf((char)tokenChar));
-      isClassIdentifier = isUpperCase(tokenChar);
+      int c = tokenCodePoint();
+
+      isClassIdentifier = isUpperCase(c);
       isConstantIdentifier = isClassIdentifier;
 
-      for (;;)
+      if (buffer != null)       // scan the identifier in place
         {
-          tokenChar = nextChar();
-          
-          if (isIdentifierPart(tokenChar))
+          if (c != tokenChar)   // skip the low surrogate of the first character
+            position++;
+
+          while (position < limit && isIdentifierPart(c = bufferCodePoint(position)))
             {
-              tokenWord.append((char)tokenChar);
-              isConstantIdentifier &=
-                (!isLetter(tokenChar) || !isLowerCase(tokenChar));
+              isConstantIdentifier &= !isLowerCaseLetter(c);
+              position += Character.charCount(c);
             }
+
+          return;
+        }
+
+      if (c != tokenChar)       // skip the low surrogate of the first character
+        input.read();
+
+      for (;;)
+        {
+          c = readCodePoint();
+          
+          if (c != -1 && isIdentifierPart(c))
+            isConstantIdentifier &= !isLowerCaseLetter(c);
           else
             {
-              input.unread(tokenChar);
+              unreadCodePoint(c);       // an identifier or number may end the input
               return;
             }
         }
     }
 
   /**
-   * Reads a maximal string of numerical digits off the input stream into the
-   * current token word.
+   * Reads a maximal string of number characters off the input stream.
    */
   final void readNumber () throws IOException
     {
-      tokenWord = new StringBuilder(String.valueOf((char)tokenChar));
+      int c = tokenCodePoint();
+
+      if (buffer != null)       // scan the number in place
+        {
+          if (c != tokenChar)   // skip the low surrogate of the first character
+            position++;
+
+          while (position < limit && isNumberPart(c = bufferCodePoint(position)))
+            position += Character.charCount(c);
+
+          return;
+        }
+
+      if (c != tokenChar)       // skip the low surrogate of the first character
+        input.read();
 
       for (;;)
         {
-          tokenChar = nextChar();
+          c = readCodePoint();
           
-          if (isDigit(tokenChar))
-            {
-              tokenWord.append((char)tokenChar);
-            }
-          else
+          if (c == -1 || !isNumberPart(c))
             {
-              input.unread(tokenChar);
+              unreadCodePoint(c);       // an identifier or number may end the input
               return;
             }
         }
@@ -665,126 +1113,227 @@ public class GenericHilite
    */
   final void checkAnnotate () throws IOException
     {
-      tokenChar = nextChar();
+      tokenChar = peekChar();
       annotateMode = isAnnotateChar();
-      if (annotateMode) tokenWord.append(annotateTag);
-      else input.unread(tokenChar);
+      if (annotateMode)
+        skipChar();
     }
 
   /**
-   * Reads a C++-style comment into the current token word.
+   * Reads the longest comment opener of the language profile starting with
+   * the current token character, and sets the current comment delimiter
+   * to that of the opener. Returns false if there is none, in which case
+   * nothing is read.
    */
-  final void readSlashSlashComment () throws IOException
+  final boolean readOpener () throws IOException
     {
-      tokenWord = new StringBuilder("//");
+      int state = profile.openerState(0,tokenChar);
 
-      checkAnnotate();
+      if (state == 0)
+        return false;
 
-      for (;;)
+      delimiter = profile.delimiter(state);
+
+      if (buffer != null)       // run the opener automaton in place
         {
-          tokenChar = nextChar();
-          tokenWord.append(htmlCodeString(tokenChar));    
-          if (tokenChar == '\n') return;
-        }      
+          int end = position;
+
+          for (int i = position; i < limit && (state = profile.openerState(state,buffer[i++])) != 0;)
+            if (profile.delimiter(state) >= 0)
+              {
+                delimiter = profile.delimiter(state);
+                end = i;
+              }
+
+          if (delimiter >= 0)
+            position = end;
+
+          return delimiter >= 0;
+        }
+
+      int length = 0;           // number of characters read ahead
+      int end = 0;              // number of those in the opener
+
+      for (int c; (c = input.read()) != -1;)
+        {
+          lookahead[length++] = (char)c;
+
+          if ((state = profile.openerState(state,c)) == 0)
+            break;
+
+          if (profile.delimiter(state) >= 0)
+            {
+              delimiter = profile.delimiter(state);
+              end = length;
+            }
+        }
+
+      while (length > end)      // push back the characters past the opener
+        input.unread(lookahead[--length]);
+
+      return delimiter >= 0;
     }
 
   /**
-   * Reads a C-style comment into the current token word.
-   * If the switch <tt>formatSyntaxDocComments</tt> is on
-   * and this is a syntaxDoc comment (<i>i.e.</i>, there
-   * are two stars after the slash) then it is formatted.
-   * Otherwise, it is treated as a normal C-style comment.
+   * Reads a comment, up to and including the closer of the current comment
+   * delimiter. If the switch <tt>formatSyntaxDocComments</tt> is on and
+   * this is a syntaxDoc comment then it is read as such, to be formatted.
+   * Otherwise, it is treated as a normal comment.
    */
-  final void readSlashStarComment () throws IOException
+  final void readComment () throws IOException
     {
-      if (formatSyntaxDocComments && isSyntaxDocComment())
+      if (formatSyntaxDocComments && profile.isDocComment(delimiter))
         {
-          formatSyntaxDocComment();
+          tokenType = SYNTAXDOC;
+          readSyntaxDocComment();
           return;
         }
 
-      tokenWord = new StringBuilder("/"+"*");
-
       checkAnnotate();
 
-      int followingChar;
+      int end = profile.closerLength(delimiter);
 
-      for (;;)
+      for (int state = 0; state != end;)
+        state = profile.closerState(delimiter,state,tokenChar = nextChar());
+    }
+
+  /**
+   * Reads a syntaxDoc comment, ending where <tt>formatSyntaxDocComment</tt>
+   * will end formatting it: at the closer of the current comment delimiter,
+   * which is not looked for in escaped characters nor in syntaxDoc tag
+   * definition lines.
+   */
+  final void readSyntaxDocComment () throws IOException
+    {
+      String opener = profile.opener(delimiter);
+      int star = opener.charAt(opener.length()-1);
+      int end = profile.closerLength(delimiter);
+
+      for (int state = 0;;)
         {
           tokenChar = nextChar();
-          tokenWord.append(htmlCodeString(tokenChar));
-          
-          if (tokenChar == '*')
+
+          state = profile.closerState(delimiter,state,tokenChar);
+          if (state == end) return;     // this ends the comment
+
+          if (tokenChar == star)        // ignore stars
+            continue;
+
+          if (tokenChar == profile.escapeChar)  // the next character is escaped
             {
-              followingChar = nextChar();
-              if (followingChar == '/')
-                {
-                  tokenWord.append("/");
-                  return;
-                }
-              else
-                tokenWord.append(htmlCodeString(followingChar));
-              continue;
+              tokenChar = nextChar();
+              state = 0;
+            }
+
+          if (tokenChar == '@')         // start of a syntaxDoc tag definition line
+            {
+              readSyntaxDocTag();
+              state = 0;
             }
         }
     }
 
   /**
-   * Returns true if this is a syntaxDoc comments.
+   * Reads a syntaxDoc tag and its definition, like <tt>recordSyntaxDocTag</tt>.
+   */  
+  final void readSyntaxDocTag () throws IOException
+    {
+      if (!isLetter(tokenChar = nextChar()))
+        return;
+
+      while (isLetter(tokenChar = nextChar()));
+
+      if (tokenChar == '\n')
+	return;
+
+      while ((tokenChar = nextChar()) != '\n');
+    }      
+
+  /**
+   * The syntaxDoc comment being formatted, and the index in it of the next
+   * character to format.
+   */
+  char[] docText;
+  int docEnd, docPosition;
+
+  /**
+   * The current character of the syntaxDoc comment being formatted.
    */
-  final boolean isSyntaxDocComment () throws IOException
+  int docChar;
+
+  /**
+   * Returns the next character of the syntaxDoc comment being formatted.
+   */
+  final int nextDocChar () throws EOFException
     {
-      tokenChar = nextChar();
+      if (docPosition == docEnd)
+        throw new EOFException();
 
-      if (tokenChar != '*')     // this is not a syntaxDoc comment
-        {
-          input.unread(tokenChar);
-          return false;
-        }
-      
-      tokenType = SYNTAXDOC;
-      return true;
+      return docText[docPosition++];
     }
 
   /**
-   * This translates the syntaxDoc comment. It turns off the preformatted
-   * mode so that HTML formatting becomes effective. Any star (\*) is ignored
-   * unless escaped with a backslash (i.e., \\\*) or followed by a / (to end
-   * the comment).
+   * This translates the syntaxDoc comment with the specified delimiter
+   * between the specified indices of the specified text (from the character
+   * after its opener). It turns off the preformatted mode so that HTML
+   * formatting becomes effective. Any star (\*), or whatever the last
+   * character of the comment opener is, is ignored unless escaped with a
+   * backslash (i.e., \\\*), or whatever the escape character is; the
+   * comment ends with its closer (<i>e.g.</i>, \*&#47;).
    */
-  final void formatSyntaxDocComment () throws IOException
+  final void formatSyntaxDocComment (int delimiter, char[] text, int start, int end) throws IOException
     {
+      long time = (metrics == null) ? 0 : System.nanoTime();
+      long writing = (metrics == null) ? 0 : metrics.writeTime;
+
+      closeTag();                       // end any open highlighting span
+
+      docText = text;
+      docPosition = start;
+      docEnd = end;
       syntaxDocTags = new HashMap();
 
-      output.write("\n</PRE>\n<HR>\n<CENTER>\n<TABLE BGCOLOR=\""+SYNTAXDOC_BG_COLOR+
+      output.write("\n</PRE>\n<HR>\n<CENTER>\n<TABLE BGCOLOR=\""+theme.SYNTAXDOC_BG_COLOR+
                    "\" WIDTH=90% BORDER=1 CELLPADDING=10>\n<TR><TD><SPAN STYLE=\"COLOR:"+
-                   SYNTAXDOC_TEXT_COLOR+"\">\n");
-    out:
-      for (;;)
+                   theme.SYNTAXDOC_TEXT_COLOR+"\">\n");
+      String opener = profile.opener(delimiter);
+      int star = opener.charAt(opener.length()-1);
+      int closer = profile.closerLength(delimiter);
+
+      for (int state = 0;;)
         {
-          tokenChar = nextChar();
+          docChar = nextDocChar();
 
-        skippingStars:
-          while (tokenChar == '*')
+          state = profile.closerState(delimiter,state,docChar);
+          if (state == closer) break;   // this ends the comment
+
+          if (docChar == star)          // ignore stars
+            continue;
+
+          if (docChar == profile.escapeChar)    // the next character is escaped
             {
-              tokenChar = nextChar();
-              if (tokenChar == '/') break out;  // this ends the comment
-              continue skippingStars;           // otherwise ignore stars
+              docChar = nextDocChar();  // process it as a non-special one
+              state = 0;
             }
 
-          if (tokenChar == '\\')        // the next character is escaped
-            tokenChar = nextChar();     // process it as a non-special one
-
-          if (tokenChar == '@')         // start of a syntaxDoc tag definition line
-            recordSyntaxDocTag();         // record the definition for the tag
+          if (docChar == '@')           // start of a syntaxDoc tag definition line
+            {
+              recordSyntaxDocTag();       // record the definition for the tag
+              state = 0;
+            }
           else
-            output.write(tokenChar);    // otherwise, just output the character
+            output.write(docChar);      // otherwise, just output the character
         }
 
       if (!syntaxDocTags.isEmpty())       // end with the syntaxDoc tags if any
         formatSyntaxDocTags();
 
       output.write("\n</SPAN></TD></TR>\n</TABLE>\n</CENTER>\n<P>\n<PRE>\n");
+
+      docText = null;
+
+      if (metrics != null)
+        metrics.countJavadoc(System.nanoTime() - time - (metrics.writeTime - writing));
     }
 
   /**
@@ -794,33 +1343,34 @@ public class GenericHilite
     {
       // If the char following the '@' is not a letter
       // just output "@" followed by the char and exit
-      if (!isLetter(tokenChar = nextChar()))
+      if (!isLetter(docChar = nextDocChar()))
         {
           output.write('@');
-          output.write(tokenChar);
+          output.write(docChar);
           return;
         }
       
       // This is a bona fide tag; read it and process it
-      tokenWord = new StringBuilder();
+      StringBuilder word = new StringBuilder();
 
-      do tokenWord.append((char)tokenChar);
-      while (isLetter(tokenChar = nextChar()));
+      do word.append((char)docChar);
+      while (isLetter(docChar = nextDocChar()));
 
-      ArrayList tagDefs = (ArrayList)syntaxDocTags.get(tokenWord.toString());
+      String tag = word.toString();
+      ArrayList tagDefs = (ArrayList)syntaxDocTags.get(tag);
       if (tagDefs == null)
-        syntaxDocTags.put(tokenWord.toString(),(tagDefs = new ArrayList()));
+        syntaxDocTags.put(tag,(tagDefs = new ArrayList()));
 
       // If there is nothing else on this line, exit
-      if (tokenChar == '\n')
+      if (docChar == '\n')
 	return;
 
-      tokenWord = new StringBuilder();
+      word.setLength(0);
 
-      while ((tokenChar = nextChar()) != '\n')
-        tokenWord.append((char)tokenChar);
+      while ((docChar = nextDocChar()) != '\n')
+        word.append((char)docChar);
 
-      tagDefs.add(tokenWord.toString().trim());
+      tagDefs.add(word.toString().trim());
     }      
 
   /**
@@ -896,10 +1446,10 @@ public class GenericHilite
           else  // (i < 0 || j < 0)
             i = Math.max(i,j);
           
-          return "<TR><TD VALIGN=BASELINE><SPAN STYLE=\"COLOR:"+SYNTAXDOC_TEXT_COLOR+
+          return "<TR><TD VALIGN=BASELINE><SPAN STYLE=\"COLOR:"+theme.SYNTAXDOC_TEXT_COLOR+
                  "\"><TT>"+(i >= 0?def.substring(0,i):def)+
                  "&nbsp;</TT></SPAN></TD><TD><SPAN STYLE=\"COLOR:"+
-                 SYNTAXDOC_TEXT_COLOR+"\">- "+(i >= 0?def.substring(i):def)+
+                 theme.SYNTAXDOC_TEXT_COLOR+"\">- "+(i >= 0?def.substring(i):def)+
                  "</SPAN></TD></TR>";
         }
 
@@ -917,31 +1467,19 @@ public class GenericHilite
     }
 
   /**
-   * Reads a quoted string into the current token word.
+   * Reads a quoted string.
    */
   final void readQuotedWord () throws IOException
     {
-      tokenWord = new StringBuilder(String.valueOf((char)tokenChar));
       int quote = tokenChar;      
 
-      int prevChar = 0;
-      int prevPrevChar;
-
       for (;;)
         {
-          prevPrevChar = prevChar;
-          prevChar = tokenChar;
           tokenChar = nextChar();
-          tokenWord.append(htmlCodeString(tokenChar));
-          if (tokenChar == quote)
-            {
-              if (prevChar == '\\')
-                {
-                  if (prevPrevChar == '\\') return;
-                  continue;
-                }
-              return;
-            }
+          if (tokenChar == profile.escapeChar)  // the next character is escaped
+            nextChar();
+          else if (tokenChar == quote)
+            return;
         }
     }
 
@@ -952,20 +1490,33 @@ public class GenericHilite
    */
   final int nextToken () throws IOException
     {
-      tokenChar = input.read();         // read a character
+      tokenStart = offset();
+      tokenChar = readChar();           // read a character
 
       if (tokenChar == -1)              // this is the end of the file
         return (tokenType = EOF);       // set the token type to EOF and exit
 
-      if (isIdentifierStart(tokenChar)) // this is the start Syntax identifier
+      if (readOpener())                 // this is the start of a comment
+        {
+          tokenType = COMMENT;          // set the token type to COMMENT
+          readComment();                // read the comment
+          return tokenType;             // and exit
+        }
+
+      int c = tokenCodePoint();         // the current character (or surrogate pair)
+
+      if (isIdentifierStart(c))         // this is the start Syntax identifier
         {
           readIdentifier();             // read the identifier
 
-          if (isConstantIdentifier)     // this is a constant's name
-            return (tokenType = CONSTANT);      // set the token type to CONSTANT and exit
+          if (profile.caseIdentifiers)
+            {
+              if (isConstantIdentifier) // this is a constant's name
+                return (tokenType = CONSTANT);  // set the token type to CONSTANT and exit
 
-          if (isClassIdentifier)        // this is a class' name
-            return (tokenType = CLASS);         // set the token type to CLASS and exit
+              if (isClassIdentifier)    // this is a class' name
+                return (tokenType = CLASS);     // set the token type to CLASS and exit
+            }
 
           if (isKeyword())              // this is a Syntax keyword
             return (tokenType = KEYWORD);       // set the token type to KEYWORD and exit
@@ -973,29 +1524,11 @@ public class GenericHilite
           return (tokenType = PLAINTEXT);       // set the token type to PLAINTEXT and exit
         }
 
-      if (isDigit(tokenChar))           // this is a number
+      if (isNumberStart(c))             // this is a number
         {
           readNumber();                 // read the number
-          return (tokenType = NUMBER);          // set the token type to NUMBER and exit
-        }
 
-      if (tokenChar == '/')             // this may be the start of a comment
-        {
-          int followingChar = nextChar();       // get the next character
-          if ((followingChar == '/') || (followingChar == '*')) // this is a comment
-            {
-              tokenType = COMMENT;              // set the token type to COMMENT
-              if (followingChar == '/')         // this a C++-style comment
-                {
-                  readSlashSlashComment();      // read the C++-style comment
-                  return tokenType;             // and exit
-                }                               // this is C-style comment
-              readSlashStarComment();           // read the C-style comment
-              return tokenType;                 // and exit
-            }
-          output.write(tokenChar);              // write out the current token character
-          input.unread(followingChar);          // and push back the following character
-          return nextToken();                   // return the next token
+          return (tokenType = NUMBER);          // set the token type to NUMBER and exit
         }
 
       if (isQuote(tokenChar))           // this is the start of a quoted word
@@ -1005,11 +1538,7 @@ public class GenericHilite
         }
 
       if (isBracket(tokenChar))         // this is a bracket
-        {
-          tokenWord =                   // set the token word to the bracket
-            new StringBuilder(String.valueOf((char)tokenChar));
-          return (tokenType = BRACKET); // set the token type to BRACKET and exit
-        }
+        return (tokenType = BRACKET);   // set the token type to BRACKET and exit
 
       return (tokenType = PLAINCHAR);   // set the token type to PLANCHAR and exit
     }
@@ -1017,58 +1546,493 @@ public class GenericHilite
   //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\\  
 
   /**
-   * This is the main method. It loops reading through the input
-   * file and processes the tokens as appropriate.
+   * Hilites the input file into the output file, and closes both.
    */ 
   final void hiliteFile () throws IOException
     {
       System.out.println("*** Hiliting file:\t"+FileTools.simpleName(inputFileName));
-      preamble();
-    out:
-      for (;;)
+      String[] names = new String[renderFormats.length];
+      Writer[] outputs = openFormats(names);
+
+      try
+        {
+          hiliteInput();
+          closeInput();
+        }
+      finally
+        {
+          for (int i=0; i<outputs.length; i++)
+            outputs[i].close();
+        }
+
+      for (int i=0; i<names.length; i++)
+        System.out.println("*** Wrote hilited file:\t"+HiliteOutput.describe(names[i]));
+    }
+
+  /**
+   * Sets the renderer to write the input file in each of the selected
+   * formats, opening the file of each format but the first (which is
+   * written into the output file), and returns the writers of all of them;
+   * their names are stored into the specified array.
+   */
+  private Writer[] openFormats (String[] names) throws IOException
+    {
+      Writer[] outputs = new Writer[renderFormats.length];
+
+      names[0] = outputFileName;
+      outputs[0] = output;
+
+      if (renderFormats.length == 1)
+        {
+          renderer = formatRenderer(renderFormats[0],output,outputFileName);
+          return outputs;
+        }
+
+      FanOutRenderer fanOut = new FanOutRenderer();
+
+      try
+        {
+          for (int i=0; i<renderFormats.length; i++)
+            {
+              if (i > 0)
+                {
+                  names[i] = FanOutRenderer.rename(outputFileName,renderFormats[0],renderFormats[i]);
+                  outputs[i] = HiliteOutput.open(dir()+names[i],metrics);
+                }
+
+              fanOut.add(formatRenderer(renderFormats[i],outputs[i],names[i]));
+            }
+        }
+      catch (IOException e)
+        {
+          for (int i=1; i<outputs.length && outputs[i] != null; i++)
+            outputs[i].close();
+          throw e;
+        }
+
+      renderer = fanOut;
+      return outputs;
+    }
+
+  /**
+   * Returns a renderer writing the input in the specified format to the
+   * specified writer, under the specified output file name. An HTML
+   * renderer is this object for the output file, and another
+   * <tt>GenericHilite</tt> object with the same theme and profile for any
+   * other file.
+   */
+  private TokenRenderer formatRenderer (int format, Writer out, String name)
+    {
+      switch (format)
+        {
+        case FanOutRenderer.HTML:
+        case FanOutRenderer.CHTML:
+          GenericHilite html = (out == output) ? this : new GenericHilite(theme,profile);
+
+          html.output = out;
+          html.outputFileName = name;
+          html.outputDir = outputDir;
+          html.styleFileName = styleFileName;
+          html.classTags = cssClasses || format == FanOutRenderer.CHTML;
+          html.lineIndex = lineAnchors ? new LineIndex() : null;
+          if (pageLines == 0)
+            return html;
+
+          PageRenderer pages = new PageRenderer(html,pageLines,out,name,dir(),metrics);
+          if (out == output) pager = pages;
+          return pages;
+        case FanOutRenderer.JSON:
+          return new JsonRenderer(out,JsonRenderer.JSON);
+        case FanOutRenderer.JSONL:
+          return new JsonRenderer(out,JsonRenderer.JSON_LINES);
+        case FanOutRenderer.TEXT:
+          return new MarkerRenderer(out);
+        default:
+          return new AnsiRenderer(theme,false,out);
+        }
+    }
+
+  /**
+   * Renders the source read from the specified reader as HTML to the
+   * specified writer, using the specified name as the source's name.
+   * This neither touches the file system nor prints anything, and it
+   * closes neither the reader nor the writer. The same object may be
+   * used to render any number of sources.
+   * @param in the source reader
+   * @param out the HTML writer
+   * @param name the name of the source
+   */
+  public synchronized void render (Reader in, Writer out, String name) throws IOException
+    {
+      try
+        {
+          if (bufferInput)
+            fillBuffer(in,8192);
+          else
+            input = pushbackReader(in);
+
+          render(out,name);
+        }
+      finally
+        {
+          input = null;
+          buffer = null;
+          tokenStream.release();
+        }
+    }
+
+  /**
+   * Renders the specified source as HTML to the specified writer, using
+   * the specified name as the source's name. This neither touches the file
+   * system nor prints anything, and it does not close the writer. The same
+   * object may be used to render any number of sources.
+   * @param source the source
+   * @param out the HTML writer
+   * @param name the name of the source
+   */
+  public synchronized void render (CharSequence source, Writer out, String name) throws IOException
+    {
+      try
+        {
+          fillBuffer(source);
+          render(out,name);
+        }
+      finally
+        {
+          buffer = null;
+          tokenStream.release();
+        }
+    }
+
+  /**
+   * Reads the tokens of the specified source into a new token stream,
+   * which may then be rendered any number of times, in any format, without
+   * reading the source again. The same object may be used to tokenize any
+   * number of sources.
+   * @param source the source
+   * @return the tokens of the source
+   */
+  public synchronized TokenStream tokenize (CharSequence source) throws IOException
+    {
+      TokenStream tokens = tokenStream;
+
+      try
+        {
+          tokenStream = new TokenStream();
+          fillBuffer(source);
+          annotateMode = false;
+          tokenCount = 0;
+          lexTokens(Integer.MAX_VALUE);
+          return tokenStream;
+        }
+      finally
+        {
+          tokenStream = tokens;
+          buffer = null;
+        }
+    }
+
+  /**
+   * Renders the specified token stream (see <tt>tokenize</tt>) as HTML to
+   * the specified writer, using the specified name as the source's name.
+   * This neither touches the file system nor prints anything, and it does
+   * not close the writer; the token stream is left as it is.
+   * @param tokens the tokens of the source
+   * @param out the HTML writer
+   * @param name the name of the source
+   */
+  public synchronized void render (TokenStream tokens, Writer out, String name) throws IOException
+    {
+      inputFileName = outputFileName = name;
+      output = out;
+
+      try
+        {
+          start(name);
+          render(tokens,true);
+          end();
+        }
+      finally
+        {
+          output = null;
+        }
+    }
+
+  /**
+   * Renders the current input as HTML to the specified writer.
+   */
+  private void render (Writer out, String name) throws IOException
+    {
+      inputFileName = outputFileName = name;
+      output = out;
+      annotateMode = false;
+      tokenCount = 0;
+
+      try
+        {
+          hiliteInput();
+        }
+      finally
+        {
+          output = null;
+        }
+    }
+
+  /**
+   * Number of tokens read before rendering them when reading the input
+   * through a stream, so that only the text of these tokens is kept.
+   */
+  final static int CHUNK_SIZE = 1024;
+
+  /**
+   * This is the main method. It loops reading tokens off the input into
+   * the token stream, and rendering them. When the input is buffered, it
+   * is read whole before any of it is rendered; otherwise, it is read and
+   * rendered by chunks.
+   */ 
+  final void hiliteInput () throws IOException
+    {
+      renderer.start(inputFileName);
+
+      boolean more;
+
+      do
+        {
+          long start = (metrics == null) ? 0 : System.nanoTime();
+          more = lexTokens((buffer == null) ? CHUNK_SIZE : Integer.MAX_VALUE);
+          if (metrics != null) metrics.lexTime += System.nanoTime() - start;
+
+          renderer.render(tokenStream,!more);
+
+          if (more)             // keep only the text after the last token
+            tokenStream.discard(tokenStream.end(tokenStream.size()-1));
+        }
+      while (more);
+
+      renderer.end();
+    }
+
+  /**
+   * Sets the renderer of the tokens (<tt>null</tt> for this object itself,
+   * which renders them as HTML).
+   * @param renderer the token renderer
+   */
+  public void setRenderer (TokenRenderer renderer)
+    {
+      this.renderer = (renderer == null) ? this : renderer;
+    }
+
+  /**
+   * Makes this object, as an HTML renderer, write the next page of a
+   * paginated output to the specified writer under the specified name.
+   */
+  public void setPage (Writer out, String name)
+    {
+      output = out;
+      outputFileName = name;
+    }
+
+  /**
+   * Sets the navigation links written before and after the source.
+   */
+  public void setNavigation (String links)
+    {
+      navigation = links;
+    }
+
+  /**
+   * Reads tokens off the input into the token stream, until the end of
+   * the input or until the stream holds the specified number of tokens.
+   * Returns true iff the end of the input was not reached. The tag of a
+   * syntaxDoc comment in the stream is its comment delimiter.
+   */
+  final boolean lexTokens (int max) throws IOException
+    {
+      while (tokenStream.size() < max)
         {
-          switch (nextToken())
+          tokenCount++;
+
+          int type = nextToken();
+          if (metrics != null) metrics.countToken(type);
+
+          switch (type)
             {
             case EOF:
-              input.close();
-              break out;
-            case PLAINCHAR:
-              writeTokenChar();
+              return false;
+            case PLAINCHAR:             // rendered as part of the text between tokens
+              break;
+            case SYNTAXDOC:
+              tokenStream.add(type,delimiter,tokenAux(),tokenStart,offset());
               break;
+            default:
+              tokenStream.add(type,tokenTag(),tokenAux(),tokenStart,offset());
+            }
+        }
+
+      return true;
+    }
+
+  /**
+   * Returns the auxiliary value of the current token in the token stream:
+   * for a comment, the length of its opener.
+   */
+  final int tokenAux ()
+    {
+      switch (tokenType)
+        {
+        case COMMENT:
+        case SYNTAXDOC:
+          return profile.opener(delimiter).length();
+        }
+      return 0;
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Starts rendering a source as HTML, with its preamble (which names the
+   * source after the input and output file names).
+   */
+  public void start (String name) throws IOException
+    {
+      inputFileName = name;
+      openTags = classTags ? theme.openClassTags : theme.openTags;
+      closeTags = classTags ? theme.closeClassTags : theme.closeTags;
+      savedChars = 0;
+      openTag = -1;
+      pendingSpace.setLength(0);
+
+      if (lineIndex != null) output = lineIndex.open(output);
+      preamble();
+      if (lineIndex != null) lineIndex.begin();
+    }
+
+  /**
+   * Ends rendering a source as HTML, with its postamble.
+   */
+  public void end () throws IOException
+    {
+      if (lineIndex != null) lineIndex.finish();
+      postamble();
+      if (lineIndex != null) output = lineIndex.close(dir()+outputFileName+LineIndex.SUFFIX);
+
+      if (classTags) totalSavedChars.addAndGet(savedChars);
+
+      FragmentCache.SHARED.count(fragmentHits,fragmentMisses);
+      if (metrics != null)
+        {
+          metrics.fragmentHits += fragmentHits;
+          metrics.fragmentMisses += fragmentMisses;
+        }
+      fragmentHits = fragmentMisses = 0;
+    }
+
+  /**
+   * Renders the tokens of the specified stream as HTML, each preceded by
+   * the plain characters between it and the previous one. If this is the
+   * last chunk of the source, the plain characters after the last token
+   * are rendered too, and the open highlighting span is closed.
+   */
+  public void render (TokenStream tokens, boolean last) throws IOException
+    {
+      char[] text = tokens.text();
+      int rendered = 0;
+
+      if (lineIndex != null)
+        lineIndex.countSource(text,0,last ? tokens.length()
+                                          : (tokens.size() > 0 ? tokens.end(tokens.size()-1) : 0));
+
+      for (int i=0; i<tokens.size(); i++)
+        {
+          int start = tokens.start(i);
+          int end = tokens.end(i);
+
+          renderPlain(text,rendered,start);
+
+          switch (tokens.type(i))
+            {
             case PLAINTEXT:
-              output.write(tokenWord.toString());
+              closeTag();
+              writeText(text,start,end);
               break;
             case SYNTAXDOC:
+              closeTag();
+              if (lineIndex != null) lineIndex.suspend(text,start,end);
+              formatSyntaxDocComment(tokens.tag(i),text,start+tokens.aux(i),end);
+              if (lineIndex != null) lineIndex.resume();
               break;
             default:
-              hiliteTokenWord();
+              int tag = tokens.tag(i);
+
+              if (end-start <= FragmentCache.MAX_LENGTH && tag != HiliteTheme.ANNOTATION)
+                {
+                  writeFragment(tag,text,start,end);
+                  break;
+                }
+
+              hiliteToken(tag);
+              if (tag == HiliteTheme.ANNOTATION && tokens.aux(i) > 0) // replace the annotation character
+                {
+                  int annotation = start+tokens.aux(i);
+                  writeText(text,start,annotation);
+                  output.write(theme.annotateTag);
+                  start = annotation+1;
+                }
+              writeText(text,start,end);
             }
+
+          rendered = end;
+        }
+
+      if (last)
+        {
+          renderPlain(text,rendered,tokens.length());
+          closeTag();
         }
-      postamble();
     }
 
+  /**
+   * Renders the plain characters between the specified indices of the
+   * specified text. Whitespace following a highlighted token is held
+   * while its span is open, in case the next token extends it.
+   */
+  final void renderPlain (char[] text, int start, int end) throws IOException
+    {
+      while (start < end && openTag >= 0 && isSpace(text[start]))
+        pendingSpace.append(text[start++]);
+
+      if (start < end)
+        {
+          closeTag();
+          writeText(text,start,end);
+        }
+    }
 
   /**
    * This method outputs whatever goes in the output file's preamble.
    */
   final void preamble () throws IOException
     {
-      String bc = (BACKGROUND_COLOR == null)
+      String bc = (theme.BACKGROUND_COLOR == null)
         ? ""
-        : " BGCOLOR=\""+BACKGROUND_COLOR+"\"";
-      String tc = (TEXT_COLOR == null)
+        : " BGCOLOR=\""+theme.BACKGROUND_COLOR+"\"";
+      String tc = (theme.TEXT_COLOR == null)
         ? ""
-        : " TEXT=\""+TEXT_COLOR+"\"";
-      String fs = (FONT_SIZE == null)
+        : " TEXT=\""+theme.TEXT_COLOR+"\"";
+      String fs = (theme.FONT_SIZE == null)
         ? ""
-        : " SIZE=\""+FONT_SIZE+"\"";
+        : " SIZE=\""+theme.FONT_SIZE+"\"";
       
+      String ss = classTags
+        ? "\n<LINK REL=\"STYLESHEET\" TYPE=\"text/css\" HREF=\""+styleFileName+"\">"
+        : "";
+
       output.write("<HTML>\n<HEAD>\n<TITLE>\n"+outputFileName+
-                   "\n</TITLE>\n</HEAD>\n<BODY"+bc+tc+fs+">"+
+                   "\n</TITLE>"+ss+"\n</HEAD>\n<BODY"+bc+tc+fs+">"+
                    "\n<CENTER>\n<TABLE BGCOLOR=white WIDTH=50% BORDER=5 CELLPADDING=20>"+
                    "\n<TR><TD ALIGN=CENTER>\n<SPAN STYLE=\"FONT-SIZE:XX-LARGE\"><TT><B>"+
                    FileTools.simpleName(inputFileName)+"</B></TT></SPAN>\n<P>\n</TD></TR>"+
-                   "\n</TABLE>\n</CENTER>\n<PRE>\n");
+                   "\n</TABLE>\n</CENTER>\n"+navigation+"<PRE>\n");
     }
 
   /**
@@ -1076,7 +2040,7 @@ public class GenericHilite
    */
   final void postamble () throws IOException
     {
-      output.write("\n</PRE>\n<P>\n<HR>\n<P ALIGN=\"RIGHT\">"+
+      output.write("\n</PRE>\n"+navigation+"<P>\n<HR>\n<P ALIGN=\"RIGHT\">"+
                    "<SPAN STYLE=\"COLOR:#F07070\"><EM>\n"+
                    "This file was generated on "+(new Date())+
                    " from file <SPAN STYLE=\"COLOR:BROWN\"><KBD>"+
@@ -1086,55 +2050,97 @@ public class GenericHilite
                    " written by <A HREF=\"http://www.hassan-ait-kaci.net/\">"+
                    "Hassan A&iuml;t-Kaci</A></EM></SPAN>\n"+
                    "<P>\n<HR>\n</BODY>\n</HTML>");
-      output.close();
-      System.out.println("*** Wrote hilited file:\t"+outputFileName);
     }
 
   /**
-   * Outputs a token word highlighted in color and style according to its type.
+   * Opens the highlighting span of a token with the specified tag, unless
+   * it is already open.
    */
-  final void hiliteTokenWord () throws IOException
+  final void hiliteToken (int tag) throws IOException
     {
-      String color = null;
-      String style = null;
+      if (tag == openTag)               // same as the open span: extend it
+        flushSpace();
+      else
+        {
+          closeTag();
+          output.write(openTags[tag]);
+          savedChars += theme.classTagSavings[tag];
+          openTag = tag;
+        }
+    }
 
-      switch (tokenType)
+  /**
+   * Writes the highlighted token between the specified indices of the
+   * specified text with the specified tag, as its HTML fragment from the
+   * shared fragment cache (which is made and cached if not found), in a
+   * single write of its opening tag and text, or of its text only if it
+   * extends the open span.
+   */
+  final void writeFragment (int tag, char[] text, int start, int end) throws IOException
+    {
+      FragmentCache.Fragment fragment = FragmentCache.SHARED.get(openTags[tag],text,start,end-start);
+
+      if (fragment != null)
+        fragmentHits++;
+      else
         {
-        case BRACKET:
-          color = BRACKET_COLOR;
-          style = BRACKET_STYLE;
-          break;
-        case COMMENT:
-          color = annotateMode ? ANNOTATE_COLOR : COMMENT_COLOR;
-          style = annotateMode ? ANNOTATE_STYLE : COMMENT_STYLE;
-          break;
-        case NUMBER:
-          color = NUMBER_COLOR;
-          style = NUMBER_STYLE;
-          break;
-        case STRING:
-          color = STRING_COLOR;
-          style = STRING_STYLE;
-          break;
-        case KEYWORD:
-          color = keywordColor();
-          style = keywordStyle();
-          break;
-        case CLASS:
-          color = CLASS_COLOR;
-          style = CLASS_STYLE;
-          break;
-        case CONSTANT:
-          color = CONSTANT_COLOR;
-          style = CONSTANT_STYLE;
-          break;
+          fragmentMisses++;
+
+          StringBuilder escaped = new StringBuilder(end-start);
+          for (int i=start; i<end; i++)
+            {
+              String code = htmlCode(text[i]);
+              if (code == null)
+                escaped.append(text[i]);
+              else
+                escaped.append(code);
+            }
+
+          fragment = FragmentCache.SHARED.put(openTags[tag],text,start,end-start,escaped.toString());
+        }
+
+      if (tag == openTag)               // same as the open span: extend it
+        {
+          flushSpace();
+          output.write(fragment.html,fragment.textStart(),fragment.html.length()-fragment.textStart());
+        }
+      else
+        {
+          closeTag();
+          output.write(fragment.html);
+          savedChars += theme.classTagSavings[tag];
+          openTag = tag;
+        }
+    }
+
+  /**
+   * Closes the open highlighting span, if any, and writes out the
+   * whitespace read since.
+   */
+  final void closeTag () throws IOException
+    {
+      if (openTag >= 0)
+        {
+          if (lineIndex != null)  // a closing tag ends the previous line
+            lineIndex.writeTrailing(closeTags[openTag]);
+          else
+            output.write(closeTags[openTag]);
+          openTag = -1;
         }
 
-      if (style != null)
-        tokenWord.insert(0,"<"+style+">").append("</"+style+">");
-      if (color != null)
-        tokenWord.insert(0,"<SPAN STYLE=\"COLOR:"+color+"\">").append("</SPAN>");        
-      output.write(tokenWord.toString());
+      flushSpace();
+    }
+
+  /**
+   * Writes out the pending whitespace.
+   */
+  final void flushSpace () throws IOException
+    {
+      if (pendingSpace.length() > 0)
+        {
+          output.write(pendingSpace.toString());
+          pendingSpace.setLength(0);
+        }
     }
 
   //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
@@ -12,12 +12,15 @@ package hlt.language.tools;
  * <li><tt><b>!</b></tt>&nbsp;&nbsp; clobber existing files
  * <li><tt><b>d</b></tt>&nbsp;&nbsp; target directory for HTML file(s)
  * <li><tt><b>c</b></tt>&nbsp;&nbsp; configuration file
+ * <li><tt><b>l</b></tt>&nbsp;&nbsp; language profile file (see <tt>LanguageProfile</tt>)
  * <li><tt><b>o</b></tt>&nbsp;&nbsp; HTML output file
  * <li><tt><b>p</b></tt>&nbsp;&nbsp; package or directory (if more than one file)
  * <li><tt><b>s</b></tt>&nbsp;&nbsp; file separator character
+ * <li><tt><b>gz</b></tt>&nbsp;&nbsp; also write gzip-compressed files (<tt><b>gzonly</b></tt>: only those)
  * </ul>
  *
  * @see         GenericHilite
+ * @see         LanguageProfile
  *
  * @version     Last modified on Fri Aug 03 04:31:28 2018 by hak
  * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
@@ -25,8 +28,7 @@ package hlt.language.tools;
  */
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.BufferedWriter;
+import java.io.Writer;
 import java.io.IOException;
 import java.util.Date;
 
@@ -40,7 +42,7 @@ public class GenericHiliteCommand extends Command
       System.exit(1);
     }
 
-  static BufferedWriter index;      
+  static Writer index;      
 
   final static void w (String s) throws IOException
     {
@@ -59,6 +61,9 @@ public class GenericHiliteCommand extends Command
       defineOption("c",
                    "Hilite.Configuration",
                    "configuration file");
+      defineOption("l",
+                   "Generic.Profile",
+                   "language profile file");
       defineOption("d",
                    ".",
                    "target directory");
@@ -71,6 +76,9 @@ public class GenericHiliteCommand extends Command
       defineOption("s",
                    File.separator,
                    "file separator character");
+      defineOption("gz",
+                   "",
+                   "also write gzip-compressed files (-gzonly: only those)");
       try
         {
           defineOption("p",
@@ -88,6 +96,28 @@ public class GenericHiliteCommand extends Command
         {
           FileTools.setSeparator(getOption("s"));
 
+          if (!optionIsPresent("gz"))
+            HiliteOutput.setFormats(true,false);
+          else if (getOption("gz").length() == 0)
+            HiliteOutput.setFormats(true,true);
+          else if (getOption("gz").equals("only"))
+            HiliteOutput.setFormats(false,true);
+          else
+            throw new CommandException("Bad gz option (-gz or -gzonly expected)");
+
+          String profile = null;
+
+          if (optionIsPresent("l"))
+            try
+              {
+                LanguageProfile.load(profile = getOption("l"));
+              }
+            catch (IllegalArgumentException e)
+              {
+                System.err.println("*** "+e.getMessage());
+                System.exit(1);
+              }
+
           try
             {           
               if (!argumentIsPresent())
@@ -105,7 +135,7 @@ public class GenericHiliteCommand extends Command
                 {
                   String title = "Source files in "+getOption("p");
 
-                  index = new BufferedWriter(new FileWriter(targetDir+"index.html"));
+                  index = HiliteOutput.open(targetDir+"index.html");
 
                   wl("<HTML>");
                   wl("<HEAD>");
@@ -147,7 +177,7 @@ public class GenericHiliteCommand extends Command
                   if (fileNameSuffix(out).length() == 0)
                     out += ".html";
 
-                  new GenericHilite(nam+suf,con,out,targetDir,optionIsPresent("!"));
+                  new GenericHilite(nam+suf,con,profile,out,targetDir,optionIsPresent("!"));
 
                   if (manyFiles)
                     {
@@ -176,7 +206,7 @@ public class GenericHiliteCommand extends Command
 
                   index.close();
 
-                  System.out.println("*** Wrote file index.html in "+targetDir);
+                  System.out.println("*** Wrote file "+HiliteOutput.describe("index.html")+" in "+targetDir);
                 }
             }
           catch (IOException e)
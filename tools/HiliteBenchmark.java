@@ -0,0 +1,297 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class implements a benchmark of <tt>Hilite</tt> and <tt>GenericHilite</tt>.
+ * It renders a fixed synthetic corpus of sources of various shapes, each
+ * exercising a different part of the lexers and renderers:
+ * <ul>
+ * <li><tt>comments</tt>: line and block comments;
+ * <li><tt>strings</tt>: string and character literals with escapes;
+ * <li><tt>longlines</tt>: very long lines of expressions;
+ * <li><tt>javadoc</tt>: documentation comments with tags;
+ * <li><tt>brackets</tt>: deeply nested brackets.
+ * </ul>
+ * For each shape and highlighter, the source is rendered a number of times
+ * to warm up, then a number of times measured, and the throughput is
+ * reported in megabytes (of source) and millions of tokens per second,
+ * along with the number of bytes allocated per rendering. The output is
+ * discarded, so that only the lexing and rendering are measured. Each of
+ * these two stages may also be measured on its own: lexing the source
+ * into a token stream, and rendering that token stream. It defines the
+ * following options
+ * <ul>
+ * <li><tt><b>w</b></tt>&nbsp;&nbsp; number of warmup renderings
+ * <li><tt><b>n</b></tt>&nbsp;&nbsp; number of measured renderings
+ * <li><tt><b>k</b></tt>&nbsp;&nbsp; size of each source in kilobytes
+ * <li><tt><b>stages</b></tt>&nbsp;&nbsp; also measure the lexing and rendering stages separately
+ * </ul>
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ *
+ * @version     Last modified on Sat Oct 17 12:24:51 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.Writer;
+import java.io.IOException;
+
+public class HiliteBenchmark extends Command
+{
+  /**
+   * The names of the source shapes.
+   */
+  final static String[] SHAPES = { "comments", "strings", "longlines", "javadoc", "brackets" };
+
+  /**
+   * Returns a source of the specified shape of at least the specified
+   * number of characters.
+   */
+  static String source (String shape, int size)
+    {
+      StringBuilder s = new StringBuilder(size+4096);
+
+      s.append("package bench;\n\npublic class Shape\n{\n");
+
+      for (int i=0; s.length() < size; i++)
+        {
+          if (shape.equals("comments"))
+            {
+              s.append("  // Line comment number ").append(i).append(" about <tags> & such\n");
+              s.append("  /* Block comment ").append(i).append("\n     spanning two lines */\n");
+              s.append("  int field").append(i).append(" = ").append(i).append("; // trailing\n");
+            }
+          else if (shape.equals("strings"))
+            {
+              s.append("  String s").append(i).append(" = \"string ").append(i)
+               .append(" with \\\"escapes\\\" and <html> & \\\\ \\n\";\n");
+              s.append("  char c").append(i).append(" = '\\''; char d").append(i).append(" = 'x';\n");
+            }
+          else if (shape.equals("longlines"))
+            {
+              s.append("  static final int LONG_").append(i).append(" =");
+              for (int j=0; j<100; j++)
+                s.append(" (a").append(j).append(" + b * ").append(j).append(") -");
+              s.append(" 0;\n");
+            }
+          else if (shape.equals("javadoc"))
+            {
+              s.append("  /**\n   * Returns the <i>value</i> number ").append(i).append(" of this shape,\n")
+               .append("   * computed from the specified arguments.\n")
+               .append("   * @param x the first argument\n   * @param y the second argument\n")
+               .append("   * @return the value\n   * @see Shape\n   */\n")
+               .append("  public int value").append(i).append(" (int x, int y)\n    {\n")
+               .append("      return x + y;\n    }\n\n");
+            }
+          else if (shape.equals("brackets"))
+            {
+              s.append("  int nested").append(i).append(" () { return ");
+              for (int j=0; j<64; j++)
+                s.append("f(new int[]{(");
+              s.append("1");
+              for (int j=0; j<64; j++)
+                s.append(")})");
+              s.append("; }\n");
+            }
+          else
+            throw new CommandException("Unknown shape ("+shape+")");
+        }
+
+      return s.append("}\n").toString();
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * The stages that may be measured: lexing and rendering a source, lexing
+   * it into a token stream, and rendering its token stream.
+   */
+  final static String ALL = "all", LEX = "lex", RENDER = "render";
+
+  /**
+   * Runs the specified stage with the specified highlighter on the
+   * specified source, or its specified token stream, and returns the
+   * number of tokens read.
+   */
+  static int run (Object hiliter, String stage, String source, TokenStream tokens, Writer out)
+    throws IOException
+    {
+      if (hiliter instanceof Hilite)
+        {
+          Hilite hilite = (Hilite)hiliter;
+
+          if (stage == LEX)
+            hilite.tokenize(source);
+          else if (stage == RENDER)
+            hilite.render(tokens,out,"Shape.java");
+          else
+            hilite.render(source,out,"Shape.java");
+
+          return hilite.tokenCount;
+        }
+
+      GenericHilite hilite = (GenericHilite)hiliter;
+
+      if (stage == LEX)
+        hilite.tokenize(source);
+      else if (stage == RENDER)
+        hilite.render(tokens,out,"Shape.java");
+      else
+        hilite.render(source,out,"Shape.java");
+
+      return hilite.tokenCount;
+    }
+
+  /**
+   * Returns the token stream of the specified source, read by the
+   * specified highlighter.
+   */
+  static TokenStream tokenize (Object hiliter, String source) throws IOException
+    {
+      if (hiliter instanceof Hilite)
+        return ((Hilite)hiliter).tokenize(source);
+
+      return ((GenericHilite)hiliter).tokenize(source);
+    }
+
+  /**
+   * Benchmarks the specified stage of the specified highlighter on the
+   * specified source, and prints the results.
+   */
+  static void measure (String shape, Object hiliter, String stage, String source, int warmups, int runs)
+    throws IOException
+    {
+      NullWriter out = new NullWriter();
+      TokenStream stream = (stage == RENDER) ? tokenize(hiliter,source) : null;
+
+      for (int i=0; i<warmups; i++)
+        run(hiliter,stage,source,stream,out);
+
+      long tokens = 0;
+      long allocated = 0;
+      long time = System.nanoTime();
+
+      for (int i=0; i<runs; i++)
+        {
+          long bytes = Misc.allocatedBytes();
+          tokens += run(hiliter,stage,source,stream,out);
+          allocated += Misc.allocatedBytes() - bytes;
+        }
+
+      time = System.nanoTime() - time;
+
+      double seconds = time / 1e9;
+      double megabytes = (double)source.length() * runs / (1 << 20);
+
+      System.out.println(pad(shape,12)+pad(hiliter.getClass().getSimpleName(),16)+pad(stage,8)+
+                         pad(format(megabytes/seconds)+" MB/s",16)+
+                         pad(format(tokens/seconds/1e6)+" Mtok/s",16)+
+                         format(allocated/runs/1024.0)+" KB/file");
+    }
+
+  /**
+   * Returns the specified number with two decimals.
+   */
+  static String format (double x)
+    {
+      return String.format("%.2f",x);
+    }
+
+  /**
+   * Returns the specified string padded with spaces to the specified width.
+   */
+  static String pad (String s, int width)
+    {
+      StringBuilder p = new StringBuilder(s);
+      while (p.length() < width)
+        p.append(' ');
+      return p.toString();
+    }
+
+  public static void main (String args[])
+    {
+      defineOption("w",
+                   "10",
+                   "number of warmup renderings");
+      defineOption("n",
+                   "20",
+                   "number of measured renderings");
+      defineOption("k",
+                   "256",
+                   "size of each source in kilobytes");
+      defineOption("stages",
+                   "",
+                   "also measure the lexing and rendering stages separately");
+
+      setUsage("\nUsage: HiliteBenchmark [options] [shape ...]\n");
+
+      if (parseCommandLine(args))
+        {
+          try
+            {
+              int warmups = Integer.parseInt(getOption("w"));
+              int runs = Math.max(1,Integer.parseInt(getOption("n")));
+              int size = Integer.parseInt(getOption("k")) << 10;
+              String[] shapes = argumentIsPresent() ? getArguments() : SHAPES;
+              String[] stages = optionIsPresent("stages")
+                ? new String[] { ALL, LEX, RENDER }
+                : new String[] { ALL };
+
+              Object[] hiliters = { new Hilite(), new GenericHilite() };
+
+              for (int i=0; i<shapes.length; i++)
+                {
+                  String source = source(shapes[i],size);
+                  for (int j=0; j<hiliters.length; j++)
+                    for (int k=0; k<stages.length; k++)
+                      measure(shapes[i],hiliters[j],stages[k],source,warmups,runs);
+                }
+            }
+          catch (NumberFormatException e)
+            {
+              System.err.println("*** Bad number ("+e.getMessage()+")");
+            }
+          catch (IOException e)
+            {
+              System.err.println("*** "+e.getMessage());
+            }
+        }
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * A writer discarding what it is written, without copying it.
+   */
+  static class NullWriter extends Writer
+    {
+      public void write (int c)
+        {
+        }
+
+      public void write (char[] chars, int offset, int length)
+        {
+        }
+
+      public void write (String s)
+        {
+        }
+
+      public void write (String s, int offset, int length)
+        {
+        }
+
+      public void flush ()
+        {
+        }
+
+      public void close ()
+        {
+        }
+    }
+}
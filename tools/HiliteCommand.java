@@ -15,20 +15,134 @@ package hlt.language.tools;
  * <li><tt><b>o</b></tt>&nbsp;&nbsp; HTML output file
  * <li><tt><b>p</b></tt>&nbsp;&nbsp; package or directory (if more than one file)
  * <li><tt><b>s</b></tt>&nbsp;&nbsp; file separator character
+ * <li><tt><b>j</b></tt>&nbsp;&nbsp; number of files hilited in parallel
+ * <li><tt><b>alloc</b></tt>&nbsp;&nbsp; report the bytes allocated per file
+ * <li><tt><b>inc</b></tt>&nbsp;&nbsp; incremental build (skip unchanged files)
+ * <li><tt><b>class</b></tt>&nbsp;&nbsp; tag tokens with CSS classes rather than inline styles
+ * <li><tt><b>gz</b></tt>&nbsp;&nbsp; also write gzip-compressed files (<tt><b>gzonly</b></tt>: only those)
+ * <li><tt><b>http</b></tt>&nbsp;&nbsp; serve hilited files over HTTP on the given port
+ * <li><tt><b>cache</b></tt>&nbsp;&nbsp; size in megabytes of the server's page cache
+ * <li><tt><b>watch</b></tt>&nbsp;&nbsp; keep hiliting the files as they change
+ * <li><tt><b>metrics</b></tt>&nbsp;&nbsp; JSON file reporting per-phase metrics
+ * <li><tt><b>lang</b></tt>&nbsp;&nbsp; registry of language profiles by file extension
+ * <li><tt><b>lines</b></tt>&nbsp;&nbsp; number of source lines per HTML page (0: one page per file)
+ * <li><tt><b>format</b></tt>&nbsp;&nbsp; output formats (<i>e.g.</i>, <tt>html,json</tt>; see <tt>FanOutRenderer</tt>)
+ * <li><tt><b>ansi</b></tt>&nbsp;&nbsp; print the files hilited for a terminal (<tt><b>ansi256</b></tt>, <tt><b>ansirgb</b></tt>: in 256 or 24-bit colors)
+ * <li><tt><b>anchors</b></tt>&nbsp;&nbsp; anchor each line of the HTML and index the lines of each HTML file
  * </ul>
+ * When more than one worker is requested with <tt><b>j</b></tt>, the
+ * files are hilited concurrently by a fixed pool of threads (<tt>0</tt>
+ * means one per available processor). The index still lists the files
+ * in the order in which they appear on the command line.
+ * <p>
+ * With <tt><b>inc</b></tt>, a manifest kept in the target directory
+ * (see <tt>HiliteManifest</tt>) is used to skip the files whose contents,
+ * configuration, and <tt>Hilite</tt> version have not changed since they
+ * were last hilited.
+ * <p>
+ * With <tt><b>class</b></tt>, the colors and styles of the configuration
+ * are written once as CSS classes into the style file (relative to the
+ * target directory), and each highlighted token is tagged with its short
+ * class name. The number of bytes thus saved is reported at the end.
+ * <p>
+ * With <tt><b>gz</b></tt>, each HTML file, including the index, is also
+ * written compressed with gzip into a file of the same name ending in
+ * <tt>.gz</tt>, in the same pass (see <tt>HiliteOutput</tt>); with
+ * <tt><b>gzonly</b></tt>, only the compressed files are written.
+ * <p>
+ * With <tt><b>http</b></tt>, no file is written: instead, a local HTTP
+ * server (see <tt>HiliteServer</tt>) hilites the files under the package
+ * or directory given with <tt><b>p</b></tt> as they are requested, using
+ * <tt><b>j</b></tt> worker threads (one per processor by default).
+ * <p>
+ * With <tt><b>watch</b></tt>, once the files have been hilited, the
+ * command keeps watching their directories (see <tt>HiliteWatcher</tt>)
+ * and hilites them again as they are modified, hilites new files with
+ * the same extensions as they are created, and removes the output of
+ * deleted files, updating the index accordingly.
+ * <p>
+ * With <tt><b>metrics</b></tt>, the sizes, token counts, and time spent
+ * in each phase of hiliting each file (see <tt>HiliteMetrics</tt>) are
+ * written into the given JSON file, along with their totals, throughputs,
+ * and the percentiles of the time per file; the hits and misses of the
+ * cache of HTML fragments shared by all files (see <tt>FragmentCache</tt>)
+ * are reported as well.
+ * <p>
+ * With <tt><b>lang</b></tt>, the files whose extensions are registered in
+ * the given registry file (see <tt>LanguageRegistry</tt>) are hilited by
+ * <tt>GenericHilite</tt> in the syntax of their language profiles, and the
+ * others by <tt>Hilite</tt>, all in the same batch. Each profile is
+ * compiled once and shared by all the workers.
+ * <p>
+ * With <tt><b>format json</b></tt>, each file is written as a compact JSON
+ * object listing the offsets and CSS classes of its highlighted tokens (see
+ * <tt>JsonRenderer</tt>) in a file ending in <tt>.json</tt>, instead of
+ * HTML; with <tt><b>format jsonl</b></tt>, it is written as a JSON-lines
+ * file ending in <tt>.jsonl</tt> listing all its spans with their text.
+ * Either can be styled by clients with the style sheet written with
+ * <tt><b>class</b></tt>. Several formats may be given, separated by
+ * commas (<i>e.g.</i>, <tt>html,chtml,json,text</tt>): each file is then
+ * read and lexed once, and its tokens are written in all these formats at
+ * once (see <tt>FanOutRenderer</tt>), the first one into the output file,
+ * and each other one into a file of the same name with the extension of
+ * its format. Only the output file is listed in the index, but
+ * incremental builds check the files of all the formats, with their pages
+ * and line indexes (see <tt>HiliteOutput.outputNames</tt>).
+ * <p>
+ * With <tt><b>lines</b></tt>, the HTML of each file is split into pages of
+ * the given number of source lines (see <tt>PageRenderer</tt>), linked to
+ * one another and listed in the output file, instead of being written in
+ * a single page.
+ * <p>
+ * With <tt><b>ansi</b></tt>, no file is written: instead, the files are
+ * hilited with ANSI escape sequences (see <tt>AnsiRenderer</tt>) on the
+ * standard output, as they are read, in the colors of the configuration;
+ * 24-bit colors are used if the terminal declares it supports them, and
+ * the 256-color palette otherwise, unless forced with <tt><b>ansirgb</b></tt>
+ * or <tt><b>ansi256</b></tt>.
+ * <p>
+ * With <tt><b>anchors</b></tt>, each source line in the HTML is marked with
+ * an anchor named after its number (<i>e.g.</i>, <tt>File.html#L1234</tt>),
+ * and each HTML file (each page, with <tt><b>lines</b></tt>) is written
+ * along with a binary index of its lines, in a file of the same name
+ * ending in <tt>.idx</tt>, giving the byte offsets of each line in the
+ * HTML and in the source (see <tt>LineIndex</tt>).
  *
  * @see         Hilite
+ * @see         GenericHilite
+ * @see         LanguageRegistry
+ * @see         HiliteManifest
+ * @see         HiliteOutput
+ * @see         HiliteServer
+ * @see         HiliteWatcher
+ * @see         HiliteMetrics
+ * @see         FanOutRenderer
+ * @see         PageRenderer
+ * @see         JsonRenderer
+ * @see         AnsiRenderer
+ * @see         LineIndex
  *
- * @version     Last modified on Fri Aug 03 04:32:14 2018 by hak
+ * @version     Last modified on Sat Oct 17 17:41:08 2026 by hak
  * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
  * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
  */
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileReader;
+import java.io.Reader;
+import java.io.Writer;
 import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
 
 import hlt.language.io.FileTools;
 
@@ -40,7 +154,12 @@ public class HiliteCommand extends Command
       System.exit(1);
     }
 
-  static BufferedWriter index;      
+  static Writer index;      
+
+  /**
+   * The registry of language profiles by file extension, if any.
+   */
+  static LanguageRegistry languages;
 
   final static void w (String s) throws IOException
     {
@@ -52,6 +171,311 @@ public class HiliteCommand extends Command
       index.write(s+"\n");
     }
 
+  /**
+   * Returns the number of worker threads requested with the <tt>j</tt>
+   * option; <tt>0</tt> stands for the number of available processors.
+   */
+  static int workerCount ()
+    {
+      int workers;
+
+      try
+        {
+          workers = Integer.parseInt(getOption("j"));
+        }
+      catch (NumberFormatException e)
+        {
+          throw new CommandException("Bad number of workers ("+getOption("j")+")");
+        }
+
+      if (workers <= 0)
+        workers = Runtime.getRuntime().availableProcessors();
+
+      return workers;
+    }
+
+  /**
+   * Waits for all the submitted hiliting jobs to complete, reporting
+   * those that failed, and shuts down the worker pool.
+   */
+  static void awaitJobs (ExecutorService pool, ArrayList jobs)
+    {
+      for (Iterator i = jobs.iterator(); i.hasNext();)
+        {
+          try
+            {
+              ((Future)i.next()).get();
+            }
+          catch (ExecutionException e)
+            {
+              System.err.println("*** "+e.getCause());
+            }
+          catch (InterruptedException e)
+            {
+              Thread.currentThread().interrupt();
+              break;
+            }
+        }
+      pool.shutdownNow();
+    }
+
+  /**
+   * Returns a description of the options that affect the contents of the
+   * generated files, so that changing them invalidates incremental builds.
+   */
+  static String outputOptions ()
+    {
+      return (optionIsPresent("class") ? "class " : "")
+           + (optionIsPresent("gz") ? "gz"+getOption("gz") : "")
+           + (optionIsPresent("format") ? " "+getOption("format") : "")
+           + (optionIsPresent("lines") ? " lines "+getOption("lines") : "")
+           + (optionIsPresent("anchors") ? " anchors" : "")
+           + (languages != null ? " lang "+languages.stamp() : "");
+    }
+
+  /**
+   * Selects the output formats as requested with the <tt>gz</tt> option:
+   * <tt>-gz</tt> writes compressed files alongside the plain ones, and
+   * <tt>-gzonly</tt> writes only compressed files.
+   */
+  static void setOutputFormats ()
+    {
+      if (!optionIsPresent("gz"))
+        HiliteOutput.setFormats(true,false);
+      else if (getOption("gz").length() == 0)
+        HiliteOutput.setFormats(true,true);
+      else if (getOption("gz").equals("only"))
+        HiliteOutput.setFormats(false,true);
+      else
+        throw new CommandException("Bad gz option (-gz or -gzonly expected)");
+    }
+
+  /**
+   * Returns the number of source lines per HTML page requested with the
+   * <tt>lines</tt> option (<tt>0</tt> for a single page).
+   */
+  static int pageLines ()
+    {
+      if (!optionIsPresent("lines"))
+        return 0;
+
+      try
+        {
+          int lines = Integer.parseInt(getOption("lines"));
+          if (lines >= 0)
+            return lines;
+        }
+      catch (NumberFormatException e)
+        {
+        }
+
+      throw new CommandException("Bad number of lines per page ("+getOption("lines")+")");
+    }
+
+  /**
+   * Returns the output formats requested with the <tt>format</tt> option
+   * (see <tt>FanOutRenderer</tt>).
+   */
+  static int[] renderFormats ()
+    {
+      try
+        {
+          return FanOutRenderer.parseFormats(getOption("format"));
+        }
+      catch (IllegalArgumentException e)
+        {
+          throw new CommandException(e.getMessage()+" (html, chtml, json, jsonl, text, or ansi expected)");
+        }
+    }
+
+  /**
+   * Returns true iff some output format uses CSS classes (see the
+   * <tt>class</tt> and <tt>format</tt> options).
+   */
+  static boolean usesCssClasses ()
+    {
+      int[] formats = renderFormats();
+
+      for (int i=0; i<formats.length; i++)
+        if (formats[i] == FanOutRenderer.CHTML)
+          return true;
+
+      return optionIsPresent("class");
+    }
+
+  /**
+   * Returns the extension of the output files, that of the first format
+   * requested with the <tt>format</tt> option.
+   */
+  static String outputExtension ()
+    {
+      return FanOutRenderer.extension(renderFormats()[0]);
+    }
+
+  /**
+   * Writes the index of the files hilited by the specified jobs, in
+   * order, into the target directory.
+   */
+  static synchronized void writeIndex (String targetDir, String title, Collection jobs)
+    throws IOException
+    {
+      index = HiliteOutput.open(targetDir+"index.html");
+
+      wl("<HTML>");
+      wl("<HEAD>");
+      wl("<TITLE>");
+      wl(title);
+      wl("</TITLE>");
+      wl("</HEAD>");
+      wl("<BODY BGCOLOR=\"#DDDDDD\">");
+      wl("<CENTER>");
+      wl("<TABLE BGCOLOR=white WIDTH=50% BORDER=5 CELLPADDING=20>");
+      wl("<TR><TD ALIGN=CENTER>");
+      wl("<SPAN STYLE=\"FONT-SIZE:X-LARGE\"><B>"+title+"</B></SPAN>");
+      wl("<P>");
+      wl("</TD></TR>");
+      wl("</TABLE>");
+      wl("</CENTER>");
+      wl("<P>");
+      wl("<OL>");
+
+      for (Iterator i = jobs.iterator(); i.hasNext();)
+        {
+          HiliteJob job = (HiliteJob)i.next();
+          w("<LI><A HREF=\""+job.output+"\">");
+          wl("<TT><B>"+job.name+"</B></TT></A>");
+        }
+
+      wl("</OL>");
+      wl("<P>");
+      wl("<HR>");
+      wl("<P ALIGN=\"RIGHT\">");
+      wl("<SPAN STYLE=\"COLOR:#F07070\"><EM>\n"+
+         "This file was generated on "+
+         (new Date())+"<BR>"+
+         "by the <SPAN STYLE=\"COLOR:BROWN\"><TT>"+
+         "hlt.language.tools.HiliteCommand</TT></SPAN> Java tool"+
+         " written by <A HREF=\"http://hassan-ait-kaci.net\">"+
+         "Hassan A&iuml;t-Kaci</A></EM></SPAN>");
+      wl("<P>");
+      wl("<HR>");
+      wl("</BODY>");
+      wl("</HTML>");
+
+      index.close();
+
+      System.out.println("*** Wrote file "+HiliteOutput.describe("index.html")+" in "+targetDir);
+    }
+
+  /**
+   * Starts a server for the files under the package or directory, as
+   * requested with the <tt>http</tt> option.
+   */
+  static void serve () throws IOException
+    {
+      int port, megabytes;
+
+      try
+        {
+          port = Integer.parseInt(getOption("http"));
+          megabytes = Integer.parseInt(getOption("cache"));
+        }
+      catch (NumberFormatException e)
+        {
+          throw new CommandException("Bad port or cache size ("+getOption("http")+", "+getOption("cache")+")");
+        }
+
+      int workers = optionIsPresent("j") ? workerCount() : Runtime.getRuntime().availableProcessors();
+      HiliteServer server = new HiliteServer(getOption("p"),getOption("con"),getOption("css"),
+                                             (long)megabytes << 20);
+
+      port = server.start(port,workers);
+      System.out.println("*** Serving "+getOption("p")+" at http://localhost:"+port+"/");
+    }
+
+  /**
+   * Returns true iff the files are to be printed in 24-bit colors, as
+   * requested with the <tt>ansi</tt> option: <tt>-ansirgb</tt> forces
+   * 24-bit colors, <tt>-ansi256</tt> forces the 256-color palette, and
+   * <tt>-ansi</tt> uses 24-bit colors if the terminal supports them.
+   */
+  static boolean trueColor ()
+    {
+      if (getOption("ansi").length() == 0)
+        return AnsiRenderer.trueColorTerminal();
+      if (getOption("ansi").equals("rgb"))
+        return true;
+      if (getOption("ansi").equals("256"))
+        return false;
+
+      throw new CommandException("Bad ansi option (-ansi, -ansi256, or -ansirgb expected)");
+    }
+
+  /**
+   * Prints the specified files hilited with ANSI escape sequences on the
+   * standard output, each as it is read, as requested with the
+   * <tt>ansi</tt> option.
+   */
+  static void printAnsi (String[] files, String defaultExtension) throws IOException
+    {
+      HiliteTheme theme = HiliteTheme.load(getOption("con"));
+      Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+      AnsiRenderer renderer = new AnsiRenderer(theme,trueColor(),out);
+
+      Hilite.setBufferInput(false);
+      GenericHilite.setBufferInput(false);
+
+      for (int i=0; i<files.length; i++)
+        {
+          String file = files[i];
+
+          if (fileNameSuffix(file).length() == 0 && !(new File(file)).exists())
+            file += defaultExtension;
+
+          Reader in;
+
+          try
+            {
+              in = new FileReader(file);
+            }
+          catch (FileNotFoundException e)
+            {
+              System.err.println("*** Can't read file "+file);
+              continue;
+            }
+
+          if (files.length > 1)
+            {
+              out.write((i > 0 ? "\n" : "")+"==> "+file+" <==\n");
+              out.flush();
+            }
+
+          String profileFile = (languages == null) ? null : languages.profileFile(file);
+
+          try
+            {
+              if (profileFile == null)
+                {
+                  Hilite hiliter = new Hilite(theme,getOption("css"));
+                  hiliter.setRenderer(renderer);
+                  hiliter.render(in,out,file);
+                }
+              else
+                {
+                  GenericHilite hiliter = new GenericHilite(theme,LanguageProfile.load(profileFile));
+                  hiliter.setRenderer(renderer);
+                  hiliter.render(in,out,file);
+                }
+            }
+          finally
+            {
+              in.close();
+            }
+        }
+
+      out.flush();
+    }
+
   public static void main (String args[])
     {
       String defaultExtension = ".java";
@@ -74,6 +498,48 @@ public class HiliteCommand extends Command
       defineOption("s",
                    File.separator,
                    "file separator character");
+      defineOption("j",
+                   "1",
+                   "number of files hilited in parallel (0 = one per processor)");
+      defineOption("alloc",
+                   "",
+                   "report the bytes allocated while hiliting each file");
+      defineOption("inc",
+                   "",
+                   "skip files unchanged since the last build");
+      defineOption("class",
+                   "",
+                   "tag tokens with CSS classes written into the CSS style file");
+      defineOption("gz",
+                   "",
+                   "also write gzip-compressed files (-gzonly: only those)");
+      defineOption("http",
+                   "8080",
+                   "serve hilited files over HTTP on this port");
+      defineOption("cache",
+                   "64",
+                   "size in megabytes of the HTTP server's page cache");
+      defineOption("watch",
+                   "",
+                   "keep hiliting the files as they change");
+      defineOption("metrics",
+                   "metrics.json",
+                   "write a JSON report of per-phase metrics into this file");
+      defineOption("lang",
+                   "Hilite.Languages",
+                   "registry of language profiles by file extension");
+      defineOption("lines",
+                   "1000",
+                   "split the HTML of each file into pages of this many source lines");
+      defineOption("format",
+                   "html",
+                   "output formats, comma-separated: html, chtml, json, jsonl, text, or ansi");
+      defineOption("ansi",
+                   "",
+                   "print the files hilited for a terminal (-ansi256, -ansirgb: in 256 or 24-bit colors)");
+      defineOption("anchors",
+                   "",
+                   "anchor each line of the HTML, and write an index of its lines beside it");
       try
         {
           defineOption("p",
@@ -90,12 +556,63 @@ public class HiliteCommand extends Command
       if (parseCommandLine(args))
         {
           FileTools.setSeparator(getOption("s"));
+          Hilite.setCountAllocations(optionIsPresent("alloc"));
+          Hilite.setCssClasses(optionIsPresent("class"));
+          Hilite.setCollectMetrics(optionIsPresent("metrics"));
+          GenericHilite.setCountAllocations(optionIsPresent("alloc"));
+          GenericHilite.setCssClasses(optionIsPresent("class"));
+          GenericHilite.setCollectMetrics(optionIsPresent("metrics"));
+          Hilite.setRenderFormats(renderFormats());
+          GenericHilite.setRenderFormats(renderFormats());
+          Hilite.setPageLines(pageLines());
+          GenericHilite.setPageLines(pageLines());
+          Hilite.setLineAnchors(optionIsPresent("anchors"));
+          GenericHilite.setLineAnchors(optionIsPresent("anchors"));
+          setOutputFormats();
+
+          if (optionIsPresent("lang"))
+            try
+              {
+                languages = new LanguageRegistry(getOption("lang"));
+                System.out.println("*** Registered "+languages.size()+" language extension(s) from "+
+                                   getOption("lang"));
+              }
+            catch (IOException e)
+              {
+                System.err.println("*** Can't read language registry "+getOption("lang")+" ("+e.getMessage()+")");
+                return;
+              }
+            catch (IllegalArgumentException e)
+              {
+                System.err.println("*** "+e.getMessage());
+                return;
+              }
+
+          if (optionIsPresent("http"))
+            {
+              try
+                {
+                  serve();
+                }
+              catch (IOException e)
+                {
+                  System.err.println(e);
+                  System.err.println("\n*** Couldn't start HTTP server");
+                }
+              return;
+            }
 
           try
             {           
               if (!argumentIsPresent())
 		helpAndExit();
 
+              if (optionIsPresent("ansi"))
+                {
+                  printAnsi(getArguments(),defaultExtension);
+                  return;
+                }
+
               String[] arguments = getArguments();
               String targetDir
 		= (optionIsPresent("d") || fileNameDir(arguments[0]).length()==0)
@@ -104,31 +621,32 @@ public class HiliteCommand extends Command
 
               boolean manyFiles = (arguments.length > 1);
 
-              if (manyFiles)
+              int workers = manyFiles ? Math.min(workerCount(),arguments.length) : 1;
+              ExecutorService pool = (workers > 1) ? Executors.newFixedThreadPool(workers) : null;
+              ArrayList futures = new ArrayList(arguments.length);
+              ArrayList jobs = new ArrayList(arguments.length);
+
+              if (usesCssClasses())
                 {
-                  String title = "Source files in "+getOption("p");
-
-                  index = new BufferedWriter(new FileWriter(targetDir+"index.html"));
-
-                  wl("<HTML>");
-                  wl("<HEAD>");
-                  wl("<TITLE>");
-                  wl(title);
-                  wl("</TITLE>");
-                  wl("</HEAD>");
-                  wl("<BODY BGCOLOR=\"#DDDDDD\">");
-                  wl("<CENTER>");
-                  wl("<TABLE BGCOLOR=white WIDTH=50% BORDER=5 CELLPADDING=20>");
-                  wl("<TR><TD ALIGN=CENTER>");
-                  wl("<SPAN STYLE=\"FONT-SIZE:X-LARGE\"><B>"+title+"</B></SPAN>");
-                  wl("<P>");
-                  wl("</TD></TR>");
-                  wl("</TABLE>");
-                  wl("</CENTER>");
-                  wl("<P>");
-                  wl("<OL>");
+                  File sheet = new File(getOption("css"));
+                  if (!sheet.isAbsolute())
+                    sheet = new File(targetDir+getOption("css"));
+
+                  HiliteTheme.load(getOption("con")).writeStyleSheet(sheet);
+                  System.out.println("*** Wrote CSS classes in "+sheet);
                 }
 
+              HiliteManifest manifest = optionIsPresent("inc")
+                ? new HiliteManifest(targetDir,
+                                     HiliteManifest.configurationHash(getOption("con"),
+                                                                      getOption("css"),
+                                                                      outputOptions()))
+                : null;
+
+              HiliteMetrics.Report report = optionIsPresent("metrics")
+                ? new HiliteMetrics.Report()
+                : null;
+
               for (int i=0; i<arguments.length; i++)
                 {
                   String arg = arguments[i];
@@ -149,45 +667,152 @@ public class HiliteCommand extends Command
                   if (!optionIsPresent("o")) out = pre;
 
                   if (fileNameSuffix(out).length() == 0)
-                    out += ".html";
+                    out += outputExtension();
 
-                  new Hilite(nam+suf,con,css,out,targetDir,optionIsPresent("!"));
+                  HiliteJob job
+                    = new HiliteJob(nam+suf,con,css,out,targetDir,optionIsPresent("!"));
 
-                  if (manyFiles)
-                    {
-                      w("<LI><A HREF=\""+out+"\">");
-                      wl("<TT><B>"+pre+suf+"</B></TT></A>");
-                    }
+                  job.name = pre+suf;
+                  jobs.add(job);
+
+                  job.manifest = manifest;
+                  job.report = report;
+
+                  if (job.isUpToDate())
+                    System.out.println("*** Skipping unchanged file:\t"+pre+suf);
+                  else if (pool == null)
+                    job.run();
+                  else
+                    futures.add(pool.submit(job));
                 }
 
-              if (manyFiles)
+              if (pool != null)
+                awaitJobs(pool,futures);
+
+              if (usesCssClasses())
+                System.out.println("*** CSS classes saved "+(Hilite.savedChars()+GenericHilite.savedChars())+" bytes");
+
+              if (manifest != null)
+                {
+                  manifest.save();
+                  System.out.println(manifest.summary());
+                }
+
+              if (report != null)
                 {
-                  wl("</OL>");
-                  wl("<P>");
-                  wl("<HR>");
-                  wl("<P ALIGN=\"RIGHT\">");
-                  wl("<SPAN STYLE=\"COLOR:#F07070\"><EM>\n"+
-                     "This file was generated on "+
-                     (new Date())+"<BR>"+
-                     "by the <SPAN STYLE=\"COLOR:BROWN\"><TT>"+
-                     "hlt.language.tools.HiliteCommand</TT></SPAN> Java tool"+
-                     " written by <A HREF=\"http://hassan-ait-kaci.net\">"+
-                     "Hassan A&iuml;t-Kaci</A></EM></SPAN>");
-                  wl("<P>");
-                  wl("<HR>");
-                  wl("</BODY>");
-                  wl("</HTML>");
-
-                  index.close();
-
-                  System.out.println("*** Wrote file index.html in "+targetDir);
+                  report.write(getOption("metrics"));
+                  System.out.println("*** Wrote metrics in "+getOption("metrics"));
+                  System.out.println("*** Fragment cache: "+FragmentCache.SHARED);
                 }
+
+              String title = "Source files in "+getOption("p");
+
+              if (manyFiles)
+                writeIndex(targetDir,title,jobs);
+
+              if (optionIsPresent("watch"))
+                new HiliteWatcher(targetDir,title,manyFiles,manifest,jobs).run();
             }
           catch (IOException e)
             {
               System.err.println(e);
               System.err.println("\n*** Couldn't create HTML files");
             }
+          catch (InterruptedException e)
+            {
+              System.out.println("*** Stopped watching");
+            }
+        }
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * This gathers what is needed to hilite one file so that it may be
+   * run either directly or by a worker thread.
+   */
+  static class HiliteJob implements Runnable
+    {
+      String input, configuration, stylefile, output, dir;
+      boolean clobber;
+
+      /**
+       * The name under which the input is listed in the index.
+       */
+      String name;
+
+      /**
+       * The incremental build manifest, if any, and the hash of the input.
+       */
+      HiliteManifest manifest;
+      String inputHash;
+
+      /**
+       * The metrics report, if any.
+       */
+      HiliteMetrics.Report report;
+
+      /**
+       * The number of pages written for the output (<tt>0</tt> if not
+       * paginated, or not yet known).
+       */
+      int pages;
+
+      HiliteJob (String input, String configuration, String stylefile,
+                 String output, String dir, boolean clobber)
+        {
+          this.input = input;
+          this.configuration = configuration;
+          this.stylefile = stylefile;
+          this.output = output;
+          this.dir = dir;
+          this.clobber = clobber;
+        }
+
+      /**
+       * Returns true iff there is a manifest according to which the output
+       * of this job is up to date.
+       */
+      boolean isUpToDate ()
+        {
+          if (manifest == null)
+            return false;
+
+          inputHash = HiliteManifest.inputHash(input);
+          return manifest.isUpToDate(output,inputHash,Hilite.renderFormats,Hilite.lineAnchors);
+        }
+
+      /**
+       * Hilites the input with <tt>GenericHilite</tt> if a language profile
+       * is registered for its extension, or with <tt>Hilite</tt> otherwise.
+       */
+      public void run ()
+        {
+          String profile = (languages == null) ? null : languages.profileFile(input);
+          boolean written;
+          HiliteMetrics metrics;
+
+          if (profile == null)
+            {
+              Hilite hilite = new Hilite(input,configuration,stylefile,output,dir,clobber);
+              written = hilite.wasWritten();
+              metrics = hilite.metrics;
+              pages = hilite.pageCount();
+            }
+          else
+            {
+              GenericHilite hilite
+                = new GenericHilite(input,configuration,stylefile,profile,output,dir,clobber);
+              written = hilite.wasWritten();
+              metrics = hilite.metrics;
+              pages = hilite.pageCount();
+            }
+
+          if (manifest != null && written)
+            manifest.record(output,inputHash,pages);
+
+          if (report != null && metrics != null)
+            report.add(metrics);
         }
     }
 }
@@ -0,0 +1,324 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class implements the manifest kept by <tt>HiliteCommand</tt> in a
+ * target directory for incremental builds. For each HTML file written in
+ * that directory, it records a hash of the input file (its name and its
+ * contents), a hash of the configuration (the configuration file, the CSS
+ * style file, and the options affecting the output), and the version of
+ * <tt>Hilite</tt>, along with the number of pages written for it (if
+ * paginated). A file whose three recorded values are unchanged, and all of
+ * whose outputs (see <tt>HiliteOutput.outputNames</tt>) still exist, need
+ * not be hilited again.
+ *
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 16:33:52 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+public class HiliteManifest
+{
+  /**
+   * Name of the manifest file in the target directory.
+   */
+  public final static String FILE_NAME = ".hilite-manifest";
+
+  /**
+   * The target directory.
+   */
+  private String dir;
+
+  /**
+   * The manifest file.
+   */
+  private File file;
+
+  /**
+   * Recorded entries (output file name -> input hash, configuration hash,
+   * version, and number of pages).
+   */
+  private Properties entries = new Properties();
+
+  /**
+   * Hash of the current configuration.
+   */
+  private String configurationHash;
+
+  /**
+   * Number of files found up to date.
+   */
+  private int skipped = 0;
+
+  /**
+   * Number of files (re)built.
+   */
+  private int rebuilt = 0;
+
+  /**
+   * Constructs the manifest of the specified target directory for the
+   * specified configuration hash, loading the existing manifest, if any.
+   * @param dir the target directory (ending with a separator, or empty)
+   * @param configurationHash the hash of the current configuration
+   */
+  public HiliteManifest (String dir, String configurationHash)
+    {
+      this.dir = dir;
+      this.configurationHash = configurationHash;
+      file = new File(dir+FILE_NAME);
+
+      if (file.exists())
+        {
+          InputStream in = null;
+          try
+            {
+              in = new FileInputStream(file);
+              entries.load(in);
+            }
+          catch (IOException e)
+            {
+              System.err.println("*** Ignoring unreadable manifest "+file+" ("+e.getMessage()+")");
+              entries.clear();
+            }
+          finally
+            {
+              close(in);
+            }
+        }
+    }
+
+  /**
+   * Returns the entry recorded for the specified input hash.
+   */
+  private String entry (String inputHash)
+    {
+      return inputHash+" "+configurationHash+" "+Hilite.VERSION;
+    }
+
+  /**
+   * Returns true iff the specified output file was built from an input
+   * with the specified hash with the current configuration and version,
+   * and all the files written for it in the specified formats, with as
+   * many pages as recorded, exist. Counts the file as skipped if so.
+   * @param output the output file name (relative to the target directory)
+   * @param inputHash the hash of the input, or <tt>null</tt> if unknown
+   * @param formats the output formats (see <tt>FanOutRenderer</tt>)
+   * @param indexed whether the lines of the HTML files are indexed
+   */
+  public synchronized boolean isUpToDate (String output, String inputHash,
+                                          int[] formats, boolean indexed)
+    {
+      if (inputHash == null)
+        return false;
+
+      String recorded = entries.getProperty(output);
+      String prefix = entry(inputHash)+" ";
+
+      if (recorded == null || !recorded.startsWith(prefix))
+        return false;
+
+      try
+        {
+          int pages = Integer.parseInt(recorded.substring(prefix.length()));
+
+          if (!HiliteOutput.allExist(HiliteOutput.outputNames(dir+output,formats,pages,indexed)))
+            return false;
+        }
+      catch (NumberFormatException e)
+        {
+          return false;
+        }
+
+      skipped++;
+      return true;
+    }
+
+  /**
+   * Records that the specified output file was built, with the specified
+   * number of pages (<tt>0</tt> if not paginated), from an input with the
+   * specified hash.
+   */
+  public synchronized void record (String output, String inputHash, int pages)
+    {
+      rebuilt++;
+      if (inputHash == null)
+        entries.remove(output);
+      else
+        entries.setProperty(output,entry(inputHash)+" "+pages);
+    }
+
+  /**
+   * Forgets the specified output file.
+   */
+  public synchronized void remove (String output)
+    {
+      entries.remove(output);
+    }
+
+  /**
+   * Writes the manifest file.
+   */
+  public synchronized void save () throws IOException
+    {
+      OutputStream out = new FileOutputStream(file);
+      try
+        {
+          entries.store(out,"Hilite "+Hilite.VERSION+" manifest: output = input-hash configuration-hash version pages");
+        }
+      finally
+        {
+          out.close();
+        }
+    }
+
+  /**
+   * Returns the number of files found up to date.
+   */
+  public synchronized int skippedCount ()
+    {
+      return skipped;
+    }
+
+  /**
+   * Returns the number of files (re)built.
+   */
+  public synchronized int rebuiltCount ()
+    {
+      return rebuilt;
+    }
+
+  /**
+   * Returns a summary of the files skipped and rebuilt.
+   */
+  public synchronized String summary ()
+    {
+      return "*** Skipped "+skipped+" unchanged file"+(skipped==1?"":"s")+
+             ", rebuilt "+rebuilt+" file"+(rebuilt==1?"":"s");
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Returns a hash of the name and contents of the specified input file,
+   * or <tt>null</tt> if it cannot be read.
+   */
+  public static String inputHash (String fileName)
+    {
+      try
+        {
+          MessageDigest digest = newDigest();
+          digest.update(fileName.getBytes("UTF-8"));
+          update(digest,new File(fileName));
+          return hex(digest.digest());
+        }
+      catch (IOException e)
+        {
+          return null;
+        }
+    }
+
+  /**
+   * Returns a hash of the specified configuration and CSS style files
+   * (their names and, when they exist, their contents) and of the
+   * specified string describing the options that affect the output.
+   */
+  public static String configurationHash (String configuration, String stylefile, String options)
+    {
+      try
+        {
+          MessageDigest digest = newDigest();
+          digest.update((configuration+"\n"+stylefile+"\n"+options+"\n").getBytes("UTF-8"));
+
+          File file = new File(configuration);
+          if (file.exists()) update(digest,file);
+
+          file = new File(stylefile);
+          if (file.exists()) update(digest,file);
+
+          return hex(digest.digest());
+        }
+      catch (IOException e)
+        {
+          return "?";
+        }
+    }
+
+  /**
+   * Returns a new message digest.
+   */
+  private static MessageDigest newDigest ()
+    {
+      try
+        {
+          return MessageDigest.getInstance("SHA-1");
+        }
+      catch (NoSuchAlgorithmException e)
+        {
+          throw new RuntimeException(e);
+        }
+    }
+
+  /**
+   * Feeds the contents of the specified file to the specified digest.
+   */
+  private static void update (MessageDigest digest, File file) throws IOException
+    {
+      InputStream in = new FileInputStream(file);
+      try
+        {
+          byte[] bytes = new byte[8192];
+          for (int n; (n = in.read(bytes)) != -1;)
+            digest.update(bytes,0,n);
+        }
+      finally
+        {
+          in.close();
+        }
+    }
+
+  /**
+   * Returns the hexadecimal string of the specified bytes.
+   */
+  private static String hex (byte[] bytes)
+    {
+      StringBuilder s = new StringBuilder(2*bytes.length);
+
+      for (int i=0; i<bytes.length; i++)
+        {
+          s.append(Character.forDigit((bytes[i] >> 4) & 0xF,16));
+          s.append(Character.forDigit(bytes[i] & 0xF,16));
+        }
+
+      return s.toString();
+    }
+
+  /**
+   * Quietly closes the specified stream.
+   */
+  private static void close (InputStream in)
+    {
+      if (in != null)
+        try
+          {
+            in.close();
+          }
+        catch (IOException e)
+          {
+          }
+    }
+}
@@ -0,0 +1,398 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class gathers the metrics of hiliting one file: the sizes of the
+ * input and output, the number of tokens of each type, the number of
+ * documentation comments, the hits and misses of the fragment cache, and
+ * the time spent in each phase:
+ * <ul>
+ * <li><tt>read</tt>: reading the input file;
+ * <li><tt>lex</tt>: scanning the tokens into a token stream;
+ * <li><tt>render</tt>: rendering the token stream as HTML;
+ * <li><tt>javadoc</tt>: formatting documentation comments;
+ * <li><tt>write</tt>: writing the output file(s), including closing them;
+ * <li><tt>total</tt>: all of the above, from start to end.
+ * </ul>
+ * The output is timed below its buffer, so that only the actual writes,
+ * one per buffer full, are timed; the time spent writing while formatting
+ * documentation comments is counted as writing only. The metrics of many
+ * files are aggregated by a <tt>Report</tt> into a JSON document with
+ * totals, throughputs, and latency percentiles.
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 17:27:37 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+public class HiliteMetrics
+{
+  /**
+   * Names of the token types, indexed by type (see <tt>Hilite</tt>).
+   */
+  public final static String[] TOKEN_NAMES =
+    { "plainchar", "bracket", "comment", "number", "string", "class",
+      "constant", "keyword", "plaintext", "javadoc" };
+
+  /**
+   * Name of the input file.
+   */
+  public final String name;
+
+  /**
+   * Sizes of the input file, of the output file(s), and number of
+   * characters written.
+   */
+  long bytesIn, bytesOut, charsOut;
+
+  /**
+   * Number of tokens of each type.
+   */
+  final long[] tokens = new long[TOKEN_NAMES.length];
+
+  /**
+   * Number of documentation comments.
+   */
+  long javadocComments;
+
+  /**
+   * Numbers of tokens whose HTML fragments were found, and not found, in
+   * the shared fragment cache (see <tt>FragmentCache</tt>).
+   */
+  long fragmentHits, fragmentMisses;
+
+  /**
+   * Nanoseconds spent in each phase.
+   */
+  long readTime, lexTime, renderTime, javadocTime, writeTime, totalTime;
+
+  /**
+   * Constructs empty metrics for the specified input file.
+   */
+  public HiliteMetrics (String name)
+    {
+      this.name = name;
+    }
+
+  /**
+   * Counts a token of the specified type.
+   */
+  final void countToken (int type)
+    {
+      if (type >= 0) tokens[type]++;
+    }
+
+  /**
+   * Counts a documentation comment formatted in the specified number of
+   * nanoseconds, not including the time spent writing.
+   */
+  final void countJavadoc (long time)
+    {
+      javadocComments++;
+      javadocTime += time;
+    }
+
+  /**
+   * Completes these metrics once the output file has been written and
+   * closed.
+   * @param start the time at which the hiliting started
+   * @param read the time at which the input was read
+   * @param input the input file
+   * @param output the name of the output file
+   */
+  final void finish (long start, long read, File input, String output)
+    {
+      long end = System.nanoTime();
+
+      readTime = read - start;
+      totalTime = end - start;
+      renderTime = Math.max(0,end - read - lexTime - javadocTime - writeTime);
+      bytesIn = input.length();
+      bytesOut = new File(output).length() + new File(output+HiliteOutput.GZIP_SUFFIX).length();
+    }
+
+  /**
+   * Returns the total number of tokens.
+   */
+  public long tokenCount ()
+    {
+      long count = 0;
+      for (int i=0; i<tokens.length; i++)
+        count += tokens[i];
+      return count;
+    }
+
+  /**
+   * Returns a writer that writes to the specified one, counting the
+   * characters written and timing the writes in these metrics.
+   */
+  Writer meter (Writer out)
+    {
+      return new Meter(out);
+    }
+
+  /**
+   * A writer counting and timing what it writes.
+   */
+  private class Meter extends Writer
+    {
+      private Writer out;
+
+      Meter (Writer out)
+        {
+          this.out = out;
+        }
+
+      public void write (int c) throws IOException
+        {
+          long time = System.nanoTime();
+          out.write(c);
+          charsOut++;
+          writeTime += System.nanoTime() - time;
+        }
+
+      public void write (char[] chars, int offset, int length) throws IOException
+        {
+          long time = System.nanoTime();
+          out.write(chars,offset,length);
+          charsOut += length;
+          writeTime += System.nanoTime() - time;
+        }
+
+      public void write (String s, int offset, int length) throws IOException
+        {
+          long time = System.nanoTime();
+          out.write(s,offset,length);
+          charsOut += length;
+          writeTime += System.nanoTime() - time;
+        }
+
+      public void flush () throws IOException
+        {
+          long time = System.nanoTime();
+          out.flush();
+          writeTime += System.nanoTime() - time;
+        }
+
+      public void close () throws IOException
+        {
+          long time = System.nanoTime();
+          out.close();
+          writeTime += System.nanoTime() - time;
+        }
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Appends to the specified buffer the JSON members describing the
+   * specified sizes, counts, and times.
+   */
+  private static void appendJson (StringBuilder json, String indent,
+                                  long bytesIn, long bytesOut, long charsOut, long[] tokens,
+                                  long javadocComments, long fragmentHits, long fragmentMisses,
+                                  long[] times)
+    {
+      long tokenCount = 0;
+      for (int i=0; i<tokens.length; i++)
+        tokenCount += tokens[i];
+
+      double seconds = times[5] / 1e9;
+
+      json.append(indent).append("\"bytesIn\": ").append(bytesIn).append(",\n");
+      json.append(indent).append("\"bytesOut\": ").append(bytesOut).append(",\n");
+      json.append(indent).append("\"charsOut\": ").append(charsOut).append(",\n");
+      json.append(indent).append("\"tokens\": ").append(tokenCount).append(",\n");
+      json.append(indent).append("\"tokensByType\": {");
+      for (int i=0; i<tokens.length; i++)
+        json.append(i==0 ? " " : ", ").append('"').append(TOKEN_NAMES[i]).append("\": ").append(tokens[i]);
+      json.append(" },\n");
+      json.append(indent).append("\"javadocComments\": ").append(javadocComments).append(",\n");
+      json.append(indent).append("\"fragmentCache\": { \"hits\": ").append(fragmentHits)
+          .append(", \"misses\": ").append(fragmentMisses)
+          .append(", \"hitRate\": ").append(decimal(FragmentCache.hitRate(fragmentHits,fragmentMisses)))
+          .append(" },\n");
+      json.append(indent).append("\"timeMs\": { \"read\": ").append(millis(times[0]))
+          .append(", \"lex\": ").append(millis(times[1]))
+          .append(", \"render\": ").append(millis(times[2]))
+          .append(", \"javadoc\": ").append(millis(times[3]))
+          .append(", \"write\": ").append(millis(times[4]))
+          .append(", \"total\": ").append(millis(times[5])).append(" },\n");
+      json.append(indent).append("\"megabytesPerSecond\": ")
+          .append(seconds > 0 ? decimal(bytesIn / seconds / (1 << 20)) : "0").append(",\n");
+      json.append(indent).append("\"tokensPerSecond\": ")
+          .append(seconds > 0 ? Math.round(tokenCount / seconds) : 0).append("\n");
+    }
+
+  /**
+   * Returns the specified number of nanoseconds in milliseconds, with
+   * three decimals.
+   */
+  private static String millis (long nanos)
+    {
+      return decimal(nanos / 1e6);
+    }
+
+  /**
+   * Returns the specified number with three decimals.
+   */
+  private static String decimal (double x)
+    {
+      return String.format(Locale.ROOT,"%.3f",x);
+    }
+
+  /**
+   * Returns the specified string as a JSON string.
+   */
+  static String jsonString (String s)
+    {
+      StringBuilder json = new StringBuilder(s.length()+2).append('"');
+
+      for (int i=0; i<s.length(); i++)
+        {
+          char c = s.charAt(i);
+
+          if (c == '"' || c == '\\')
+            json.append('\\').append(c);
+          else if (c < ' ')
+            json.append(String.format("\\u%04x",(int)c));
+          else
+            json.append(c);
+        }
+
+      return json.append('"').toString();
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * This aggregates the metrics of the files hilited in a run.
+   */
+  public static class Report
+    {
+      private HiliteMetrics[] files = new HiliteMetrics[16];
+      private int fileCount;
+      private final long start = System.nanoTime();
+
+      /**
+       * Adds the metrics of a file.
+       */
+      public synchronized void add (HiliteMetrics metrics)
+        {
+          if (fileCount == files.length)
+            files = Arrays.copyOf(files,2*fileCount);
+
+          files[fileCount++] = metrics;
+        }
+
+      /**
+       * Returns the value of the specified percentile of the specified
+       * sorted values (nearest rank).
+       */
+      private static long percentile (long[] sorted, int percent)
+        {
+          if (sorted.length == 0) return 0;
+
+          int rank = (int)Math.ceil(percent / 100.0 * sorted.length);
+          return sorted[Math.max(0,rank-1)];
+        }
+
+      /**
+       * Returns the report as a JSON document: the totals over all files,
+       * the percentiles of the time per file, and the metrics of each file.
+       */
+      public synchronized String toJson ()
+        {
+          long wallTime = System.nanoTime() - start;
+          long bytesIn = 0, bytesOut = 0, charsOut = 0, javadocComments = 0;
+          long fragmentHits = 0, fragmentMisses = 0;
+          long[] tokens = new long[TOKEN_NAMES.length];
+          long[] times = new long[6];
+          long[] latencies = new long[fileCount];
+
+          for (int i=0; i<fileCount; i++)
+            {
+              HiliteMetrics m = files[i];
+
+              bytesIn += m.bytesIn;
+              bytesOut += m.bytesOut;
+              charsOut += m.charsOut;
+              javadocComments += m.javadocComments;
+              fragmentHits += m.fragmentHits;
+              fragmentMisses += m.fragmentMisses;
+              for (int j=0; j<tokens.length; j++)
+                tokens[j] += m.tokens[j];
+              times[0] += m.readTime;
+              times[1] += m.lexTime;
+              times[2] += m.renderTime;
+              times[3] += m.javadocTime;
+              times[4] += m.writeTime;
+              times[5] += m.totalTime;
+              latencies[i] = m.totalTime;
+            }
+
+          Arrays.sort(latencies);
+
+          StringBuilder json = new StringBuilder();
+
+          json.append("{\n  \"version\": ").append(jsonString(Hilite.VERSION)).append(",\n");
+          json.append("  \"files\": ").append(fileCount).append(",\n");
+          json.append("  \"wallTimeMs\": ").append(millis(wallTime)).append(",\n");
+          json.append("  \"total\": {\n");
+          appendJson(json,"    ",bytesIn,bytesOut,charsOut,tokens,javadocComments,
+                     fragmentHits,fragmentMisses,times);
+          json.append("  },\n");
+          json.append("  \"latencyMs\": { \"p50\": ").append(millis(percentile(latencies,50)))
+              .append(", \"p90\": ").append(millis(percentile(latencies,90)))
+              .append(", \"p99\": ").append(millis(percentile(latencies,99)))
+              .append(", \"max\": ").append(millis(percentile(latencies,100))).append(" },\n");
+          json.append("  \"perFile\": [");
+
+          for (int i=0; i<fileCount; i++)
+            {
+              HiliteMetrics m = files[i];
+
+              json.append(i==0 ? "\n" : ",\n").append("    {\n");
+              json.append("      \"file\": ").append(jsonString(m.name)).append(",\n");
+              appendJson(json,"      ",m.bytesIn,m.bytesOut,m.charsOut,m.tokens,m.javadocComments,
+                         m.fragmentHits,m.fragmentMisses,
+                         new long[] { m.readTime, m.lexTime, m.renderTime, m.javadocTime, m.writeTime, m.totalTime });
+              json.append("    }");
+            }
+
+          json.append("\n  ]\n}\n");
+
+          return json.toString();
+        }
+
+      /**
+       * Writes the report as a JSON document into the specified file.
+       */
+      public void write (String fileName) throws IOException
+        {
+          Writer out = new FileWriter(fileName);
+          try
+            {
+              out.write(toJson());
+            }
+          finally
+            {
+              out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class opens the files written by <tt>Hilite</tt>, <tt>GenericHilite</tt>,
+ * and their commands' index writers. Depending on the selected formats, a
+ * file is written as plain HTML, as gzip-compressed HTML (with the suffix
+ * <tt>.gz</tt> appended to its name) to be served as is by a static web
+ * server, or as both at once. In the latter case, the characters are
+ * encoded only once and the same bytes are fed both to the plain file
+ * and to the compressor, so that both files are produced in a single
+ * streaming pass. This class also names all the files written for an
+ * output file, in every format, page, and line index (see
+ * <tt>outputNames</tt>), so that incremental builds check them all and
+ * watch mode deletes them all.
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 16:31:18 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+public class HiliteOutput
+{
+  /**
+   * Suffix appended to the names of compressed files.
+   */
+  public final static String GZIP_SUFFIX = ".gz";
+
+  /**
+   * Size of the compressor's output buffer.
+   */
+  private final static int BUFFER_SIZE = 8192;
+
+  /**
+   * When true (the default), plain files are written.
+   */
+  private static boolean plain = true;
+
+  /**
+   * When true, compressed files are written.
+   */
+  private static boolean gzip = false;
+
+  /**
+   * Selects the formats in which files are written; at least one must be
+   * selected.
+   * @param plainFiles whether plain files are written
+   * @param gzipFiles whether compressed files are written
+   */
+  public static void setFormats (boolean plainFiles, boolean gzipFiles)
+    {
+      if (!plainFiles && !gzipFiles)
+        throw new IllegalArgumentException("No output format selected");
+
+      plain = plainFiles;
+      gzip = gzipFiles;
+    }
+
+  /**
+   * Returns true iff plain files are written.
+   */
+  public static boolean plain ()
+    {
+      return plain;
+    }
+
+  /**
+   * Returns true iff compressed files are written.
+   */
+  public static boolean gzip ()
+    {
+      return gzip;
+    }
+
+  /**
+   * Returns the names of the files written for the specified file name,
+   * for messages.
+   */
+  public static String describe (String fileName)
+    {
+      if (!gzip) return fileName;
+      if (!plain) return fileName+GZIP_SUFFIX;
+      return fileName+" (and "+fileName+GZIP_SUFFIX+")";
+    }
+
+  /**
+   * Returns the first of the files that would be written for the
+   * specified file name that already exists, or <tt>null</tt> if none.
+   */
+  public static File existingFile (String fileName)
+    {
+      File file;
+
+      if (plain && (file = new File(fileName)).exists())
+        return file;
+
+      if (gzip && (file = new File(fileName+GZIP_SUFFIX)).exists())
+        return file;
+
+      return null;
+    }
+
+  /**
+   * Returns true iff all the files that would be written for the
+   * specified file name exist.
+   */
+  public static boolean allExist (String fileName)
+    {
+      return (!plain || new File(fileName).exists())
+          && (!gzip || new File(fileName+GZIP_SUFFIX).exists());
+    }
+
+  /**
+   * Returns true iff all the files that would be written for the
+   * specified file names exist (line indexes being written as they are).
+   */
+  public static boolean allExist (String[] fileNames)
+    {
+      for (int i=0; i<fileNames.length; i++)
+        if (fileNames[i].endsWith(LineIndex.SUFFIX)
+            ? !new File(fileNames[i]).exists()
+            : !allExist(fileNames[i]))
+          return false;
+
+      return true;
+    }
+
+  /**
+   * Returns the names of all the files written for the output file of the
+   * specified name in the specified formats (see <tt>FanOutRenderer</tt>):
+   * the output file itself, and the file of each other format; for each
+   * HTML format, the specified number of pages if paginated (see
+   * <tt>PageRenderer</tt>), and the line index of each HTML file if lines
+   * are indexed (see <tt>LineIndex</tt>).
+   * @param fileName the name of the output file
+   * @param formats the output formats, the first one being that of the output file
+   * @param pages the number of pages of each HTML file, or <tt>0</tt> if not paginated
+   * @param indexed whether the lines of each HTML file are indexed
+   */
+  public static String[] outputNames (String fileName, int[] formats, int pages, boolean indexed)
+    {
+      int htmlFiles = (pages > 0) ? pages : 0;
+      int indexFiles = indexed ? Math.max(pages,1) : 0;
+      int count = 0;
+
+      for (int i=0; i<formats.length; i++)
+        count += isHtml(formats[i]) ? 1+htmlFiles+indexFiles : 1;
+
+      String[] names = new String[count];
+      count = 0;
+
+      for (int i=0; i<formats.length; i++)
+        {
+          String name = (i == 0) ? fileName : FanOutRenderer.rename(fileName,formats[0],formats[i]);
+
+          names[count++] = name;
+
+          if (!isHtml(formats[i]))
+            continue;
+
+          if (pages > 0)
+            for (int k=1; k<=pages; k++)
+              {
+                names[count++] = PageRenderer.pageName(name,k);
+                if (indexed)
+                  names[count++] = PageRenderer.pageName(name,k)+LineIndex.SUFFIX;
+              }
+          else if (indexed)
+            names[count++] = name+LineIndex.SUFFIX;
+        }
+
+      return names;
+    }
+
+  /**
+   * Returns true iff the specified output format is written as HTML.
+   */
+  private static boolean isHtml (int format)
+    {
+      return format == FanOutRenderer.HTML || format == FanOutRenderer.CHTML;
+    }
+
+  /**
+   * Deletes all the files written for the output file of the specified
+   * name in the specified formats (see <tt>outputNames</tt>), with any of
+   * their pages beyond the specified number, and returns true iff there
+   * was any.
+   */
+  public static boolean delete (String fileName, int[] formats, int pages)
+    {
+      String[] names = outputNames(fileName,formats,pages,true);
+      boolean deleted = false;
+
+      for (int i=0; i<names.length; i++)
+        deleted |= deleteFile(names[i]);
+
+      for (int i=0; i<formats.length; i++)
+        if (isHtml(formats[i]))
+          deleted |= deletePages(i == 0 ? fileName : FanOutRenderer.rename(fileName,formats[0],formats[i]),
+                                 pages+1);
+
+      return deleted;
+    }
+
+  /**
+   * Deletes the pages of the output file of the specified name, from the
+   * page of the specified number on, until one is missing, along with
+   * their line indexes, and returns true iff there was any.
+   */
+  public static boolean deletePages (String fileName, int first)
+    {
+      boolean deleted = false;
+
+      for (int k=first;; k++)
+        {
+          String page = PageRenderer.pageName(fileName,k);
+
+          if (!(deleteFile(page) | deleteFile(page+LineIndex.SUFFIX)))
+            return deleted;
+
+          deleted = true;
+        }
+    }
+
+  /**
+   * Deletes the file of the specified name in any format, and returns true
+   * iff there was any.
+   */
+  private static boolean deleteFile (String fileName)
+    {
+      boolean plainDeleted = new File(fileName).delete();
+      boolean gzipDeleted = new File(fileName+GZIP_SUFFIX).delete();
+
+      return plainDeleted || gzipDeleted;
+    }
+
+  /**
+   * Returns a buffered writer to the file(s) for the specified file name
+   * in the selected formats.
+   */
+  public static Writer open (String fileName) throws IOException
+    {
+      return open(fileName,null);
+    }
+
+  /**
+   * Returns a buffered writer to the file(s) for the specified file name
+   * in the selected formats, whose writes (below the buffer) are counted
+   * and timed in the specified metrics unless they are <tt>null</tt>.
+   */
+  public static Writer open (String fileName, HiliteMetrics metrics) throws IOException
+    {
+      if (!gzip)
+        return new BufferedWriter(meter(new FileWriter(fileName),metrics));
+
+      OutputStream out = new GZIPOutputStream(new FileOutputStream(fileName+GZIP_SUFFIX),BUFFER_SIZE);
+
+      if (plain)
+        try
+          {
+            out = new Tee(new FileOutputStream(fileName),out);
+          }
+        catch (IOException e)
+          {
+            out.close();
+            throw e;
+          }
+
+      return new BufferedWriter(meter(new OutputStreamWriter(out),metrics));
+    }
+
+  /**
+   * Returns the specified writer, metered by the specified metrics unless
+   * they are <tt>null</tt>.
+   */
+  private static Writer meter (Writer out, HiliteMetrics metrics)
+    {
+      return (metrics == null) ? out : metrics.meter(out);
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * An output stream writing the same bytes to two streams.
+   */
+  private static class Tee extends OutputStream
+    {
+      private OutputStream first, second;
+
+      Tee (OutputStream first, OutputStream second)
+        {
+          this.first = first;
+          this.second = second;
+        }
+
+      public void write (int b) throws IOException
+        {
+          first.write(b);
+          second.write(b);
+        }
+
+      public void write (byte[] bytes, int offset, int length) throws IOException
+        {
+          first.write(bytes,offset,length);
+          second.write(bytes,offset,length);
+        }
+
+      public void flush () throws IOException
+        {
+          first.flush();
+          second.flush();
+        }
+
+      public void close () throws IOException
+        {
+          try
+            {
+              first.close();
+            }
+          finally
+            {
+              second.close();
+            }
+        }
+    }
+}
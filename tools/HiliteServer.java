@@ -0,0 +1,568 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class implements a local HTTP server that hilites the source files
+ * under a root directory on request, rather than generating HTML for all
+ * of them beforehand. A request for a directory gets a listing of its
+ * contents; a request for a file gets it hilited by <tt>Hilite</tt> with
+ * the theme of the configuration file (reloaded whenever that file
+ * changes); a request for the CSS style file gets that file, along with
+ * the theme's CSS classes in CSS class mode.
+ * <p>
+ * Hilited pages are kept, both plain and gzip-compressed, in an LRU cache
+ * bounded by their total size in bytes. A page is identified by the file's
+ * path and an entity tag made of its modification time and size, the
+ * theme's stamp, and the version of <tt>Hilite</tt>; clients sending that
+ * tag back in an <tt>If-None-Match</tt> header get a <tt>304</tt>
+ * response without the page being hilited or even looked up, and clients
+ * accepting gzip encoding get the compressed page (whose tag ends in
+ * <tt>-gz</tt>, since it is a different representation).
+ * <p>
+ * A file requested with the query <tt>?format=json</tt> or
+ * <tt>?format=jsonl</tt> gets its tokens in the corresponding JSON format
+ * (see <tt>JsonRenderer</tt>) rather than a hilited page, for clients that
+ * render it themselves; these are cached like pages.
+ *
+ * @see         Hilite
+ * @see         JsonRenderer
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 17:31:31 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HiliteServer implements HttpHandler
+{
+  /**
+   * The root directory (canonical).
+   */
+  private File root;
+
+  /**
+   * Name of the configuration file.
+   */
+  private String configuration;
+
+  /**
+   * Name of the CSS style file linked from the hilited pages.
+   */
+  private String stylefile;
+
+  /**
+   * Cache of hilited pages.
+   */
+  private RenderCache cache;
+
+  /**
+   * The underlying HTTP server and its worker threads, once started.
+   */
+  private HttpServer server;
+  private ExecutorService pool;
+
+  /**
+   * A highlighter per worker thread, reused for as long as the theme
+   * does not change.
+   */
+  private final ThreadLocal hiliters = new ThreadLocal()
+    {
+      protected Object initialValue ()
+        {
+          return new Hilite[1];
+        }
+    };
+
+  /**
+   * Constructs a server for the source files under the specified root
+   * directory.
+   * @param root the root directory
+   * @param configuration name of the configuration file (properties)
+   * @param stylefile name of the CSS style file linked from the pages
+   * @param cacheSize maximum total size in bytes of the cached pages
+   */
+  public HiliteServer (String root, String configuration, String stylefile, long cacheSize)
+    throws IOException
+    {
+      this.root = new File(root).getCanonicalFile();
+      this.configuration = configuration;
+      this.stylefile = stylefile;
+      cache = new RenderCache(cacheSize);
+
+      if (!this.root.isDirectory())
+        throw new IOException("No such directory: "+root);
+    }
+
+  /**
+   * Starts serving on the specified port of the loopback interface (any
+   * free port if <tt>0</tt>), with the specified number of worker threads.
+   * Returns the port actually used.
+   */
+  public synchronized int start (int port, int threads) throws IOException
+    {
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),port),0);
+      pool = Executors.newFixedThreadPool(Math.max(1,threads));
+      server.createContext("/",this);
+      server.setExecutor(pool);
+      server.start();
+
+      return server.getAddress().getPort();
+    }
+
+  /**
+   * Stops serving.
+   */
+  public synchronized void stop ()
+    {
+      if (server != null)
+        {
+          server.stop(0);
+          pool.shutdownNow();
+          server = null;
+          pool = null;
+        }
+    }
+
+  /**
+   * Returns the cache of hilited pages.
+   */
+  public RenderCache cache ()
+    {
+      return cache;
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Handles a request.
+   */
+  public void handle (HttpExchange exchange) throws IOException
+    {
+      try
+        {
+          String method = exchange.getRequestMethod();
+
+          if (!method.equals("GET") && !method.equals("HEAD"))
+            {
+              exchange.getResponseHeaders().set("Allow","GET, HEAD");
+              sendText(exchange,405,"Method not allowed");
+              return;
+            }
+
+          String path = exchange.getRequestURI().getPath();
+          File file = new File(root,path).getCanonicalFile();
+
+          if (!isUnderRoot(file))
+            sendText(exchange,404,"Not found: "+path);
+          else if (file.isDirectory())
+            {
+              if (path.endsWith("/"))
+                sendListing(exchange,file,path);
+              else
+                {
+                  exchange.getResponseHeaders().set("Location",path+"/");
+                  sendText(exchange,301,"Moved to "+path+"/");
+                }
+            }
+          else if (file.getName().equals(new File(stylefile).getName()))
+            sendStyleSheet(exchange,file);
+          else if (file.isFile())
+            sendPage(exchange,file,format(exchange.getRequestURI().getQuery()));
+          else
+            sendText(exchange,404,"Not found: "+path);
+        }
+      catch (IOException e)
+        {
+          System.err.println("*** "+e.getMessage());
+          try
+            {
+              sendText(exchange,500,"Internal error");
+            }
+          catch (IOException f)
+            {
+            }
+        }
+      finally
+        {
+          exchange.close();
+        }
+    }
+
+  /**
+   * Returns true iff the specified canonical file is the root directory
+   * or is under it.
+   */
+  private boolean isUnderRoot (File file)
+    {
+      String path = file.getPath();
+      String rootPath = root.getPath();
+
+      return path.equals(rootPath)
+          || path.startsWith(rootPath.endsWith(File.separator) ? rootPath : rootPath+File.separator);
+    }
+
+  /**
+   * Returns the JSON format (see <tt>JsonRenderer</tt>) requested with the
+   * specified query, or <tt>0</tt> for HTML.
+   */
+  private static int format (String query)
+    {
+      if ("format=json".equals(query))
+        return JsonRenderer.JSON;
+      if ("format=jsonl".equals(query))
+        return JsonRenderer.JSON_LINES;
+
+      return 0;
+    }
+
+  /**
+   * Sends the hilited page of the specified file, or its tokens in the
+   * specified JSON format (unless <tt>0</tt>), from the cache if possible.
+   */
+  private void sendPage (HttpExchange exchange, File file, int format) throws IOException
+    {
+      HiliteTheme theme = HiliteTheme.load(configuration);
+      String tag = Long.toHexString(file.lastModified())+"-"+Long.toHexString(file.length())+
+                   "-"+(format == 0 ? theme.stamp() : JsonRenderer.extension(format).substring(1))+
+                   (Hilite.cssClasses ? "-c-" : "-")+Hilite.VERSION;
+      boolean gzip = acceptsGzip(exchange);
+      String etag = "\""+tag+(gzip ? "-gz" : "")+"\"";
+      Headers headers = exchange.getResponseHeaders();
+
+      headers.set("ETag",etag);
+      headers.set("Vary","Accept-Encoding");
+
+      String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+      if (match != null && (match.equals("*") || match.indexOf(etag) >= 0))
+        {
+          exchange.sendResponseHeaders(304,-1);
+          return;
+        }
+
+      String key = file.getPath()+" "+tag;
+      Page page = cache.get(key);
+
+      if (page == null)
+        {
+          page = new Page(render(file,theme,format));
+          cache.put(key,page);
+        }
+
+      headers.set("Content-Type",(format == JsonRenderer.JSON) ? "application/json"
+                                 : (format == JsonRenderer.JSON_LINES) ? "application/x-ndjson"
+                                 : "text/html; charset=UTF-8");
+
+      if (gzip)
+        {
+          headers.set("Content-Encoding","gzip");
+          send(exchange,200,page.gzip);
+        }
+      else
+        send(exchange,200,page.html);
+    }
+
+  /**
+   * Returns the specified file hilited with the specified theme, or its
+   * tokens in the specified JSON format (unless <tt>0</tt>), encoded in
+   * UTF-8.
+   */
+  private byte[] render (File file, HiliteTheme theme, int format) throws IOException
+    {
+      Hilite[] hiliter = (Hilite[])hiliters.get();
+
+      if (hiliter[0] == null || hiliter[0].theme != theme)
+        hiliter[0] = new Hilite(theme,stylefile);
+
+      Hilite hilite = hiliter[0];
+
+      StringWriter html = new StringWriter((int)Math.min(4*file.length()+1024,Integer.MAX_VALUE/2));
+      Reader in = new FileReader(file);
+
+      hilite.setRenderer((format == 0) ? null : new JsonRenderer(html,format));
+
+      try
+        {
+          hilite.render(in,html,file.getName());
+        }
+      finally
+        {
+          in.close();
+        }
+
+      return html.toString().getBytes("UTF-8");
+    }
+
+  /**
+   * Sends the CSS style file, if it exists, followed in CSS class mode
+   * by the theme's CSS classes unless it already contains them.
+   */
+  private void sendStyleSheet (HttpExchange exchange, File file) throws IOException
+    {
+      String text = file.isFile() ? new String(readBytes(file),"UTF-8") : "";
+
+      if (Hilite.cssClasses)
+        {
+          String classes = HiliteTheme.load(configuration).styleSheet();
+          if (text.indexOf(classes) < 0)
+            text = text+classes;
+        }
+
+      if (!file.isFile() && text.length() == 0)
+        {
+          sendText(exchange,404,"Not found: "+file.getName());
+          return;
+        }
+
+      exchange.getResponseHeaders().set("Content-Type","text/css; charset=UTF-8");
+      send(exchange,200,text.getBytes("UTF-8"));
+    }
+
+  /**
+   * Sends a listing of the specified directory.
+   */
+  private void sendListing (HttpExchange exchange, File dir, String path) throws IOException
+    {
+      String[] names = dir.list();
+      if (names == null) names = new String[0];
+      Arrays.sort(names);
+
+      String title = "Source files in "+escape(path);
+      StringBuilder html = new StringBuilder();
+
+      html.append("<HTML>\n<HEAD>\n<TITLE>\n").append(title).append("\n</TITLE>\n</HEAD>\n")
+          .append("<BODY BGCOLOR=\"#DDDDDD\">\n<CENTER>\n")
+          .append("<TABLE BGCOLOR=white WIDTH=50% BORDER=5 CELLPADDING=20>\n<TR><TD ALIGN=CENTER>\n")
+          .append("<SPAN STYLE=\"FONT-SIZE:X-LARGE\"><B>").append(title).append("</B></SPAN>\n<P>\n")
+          .append("</TD></TR>\n</TABLE>\n</CENTER>\n<P>\n<OL>\n");
+
+      if (!path.equals("/"))
+        html.append("<LI><A HREF=\"../\"><TT><B>../</B></TT></A>\n");
+
+      for (int i=0; i<names.length; i++)
+        {
+          if (names[i].startsWith(".")) continue;
+
+          String name = new File(dir,names[i]).isDirectory() ? names[i]+"/" : names[i];
+          html.append("<LI><A HREF=\"").append(escape(encode(name))).append("\">")
+              .append("<TT><B>").append(escape(name)).append("</B></TT></A>\n");
+        }
+
+      html.append("</OL>\n</BODY>\n</HTML>\n");
+
+      exchange.getResponseHeaders().set("Content-Type","text/html; charset=UTF-8");
+      send(exchange,200,html.toString().getBytes("UTF-8"));
+    }
+
+  /**
+   * Sends a plain text response with the specified status.
+   */
+  private static void sendText (HttpExchange exchange, int status, String text) throws IOException
+    {
+      exchange.getResponseHeaders().set("Content-Type","text/plain; charset=UTF-8");
+      send(exchange,status,(text+"\n").getBytes("UTF-8"));
+    }
+
+  /**
+   * Sends a response with the specified status and body (only the headers
+   * for a <tt>HEAD</tt> request).
+   */
+  private static void send (HttpExchange exchange, int status, byte[] body) throws IOException
+    {
+      if (exchange.getRequestMethod().equals("HEAD"))
+        {
+          exchange.sendResponseHeaders(status,-1);
+          return;
+        }
+
+      exchange.sendResponseHeaders(status,body.length == 0 ? -1 : body.length);
+      if (body.length > 0)
+        {
+          OutputStream out = exchange.getResponseBody();
+          out.write(body);
+          out.close();
+        }
+    }
+
+  /**
+   * Returns true iff the client accepts gzip-encoded responses.
+   */
+  private static boolean acceptsGzip (HttpExchange exchange)
+    {
+      String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+      return accepted != null && accepted.indexOf("gzip") >= 0;
+    }
+
+  /**
+   * Returns the contents of the specified file.
+   */
+  private static byte[] readBytes (File file) throws IOException
+    {
+      InputStream in = new FileInputStream(file);
+      try
+        {
+          return in.readAllBytes();
+        }
+      finally
+        {
+          in.close();
+        }
+    }
+
+  /**
+   * Returns the specified file name encoded as a relative URI path.
+   */
+  private static String encode (String name)
+    {
+      try
+        {
+          return new URI(null,null,name,null).getRawPath();
+        }
+      catch (URISyntaxException e)
+        {
+          return name;
+        }
+    }
+
+  /**
+   * Returns the specified text with HTML special characters escaped.
+   */
+  private static String escape (String text)
+    {
+      StringBuilder s = new StringBuilder(text.length());
+
+      for (int i=0; i<text.length(); i++)
+        {
+          char c = text.charAt(i);
+          String code = Hilite.htmlCode(c);
+
+          if (code == null && c != '"')
+            s.append(c);
+          else
+            s.append(code == null ? "&quot;" : code);
+        }
+
+      return s.toString();
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * A hilited page, both plain and gzip-compressed.
+   */
+  static class Page
+    {
+      final byte[] html, gzip;
+
+      Page (byte[] html) throws IOException
+        {
+          this.html = html;
+
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream(html.length/4+64);
+          GZIPOutputStream out = new GZIPOutputStream(bytes);
+          out.write(html);
+          out.close();
+          gzip = bytes.toByteArray();
+        }
+
+      int size ()
+        {
+          return html.length + gzip.length;
+        }
+    }
+
+  /**
+   * An LRU cache of hilited pages bounded by their total size in bytes.
+   */
+  public static class RenderCache
+    {
+      /**
+       * Pages by key, from the least to the most recently used.
+       */
+      private final LinkedHashMap pages = new LinkedHashMap(16,0.75f,true);
+
+      private final long capacity;
+      private long size = 0;
+      private long hits = 0, misses = 0;
+
+      RenderCache (long capacity)
+        {
+          this.capacity = capacity;
+        }
+
+      /**
+       * Returns the page with the specified key, or <tt>null</tt> if
+       * it is not cached.
+       */
+      synchronized Page get (String key)
+        {
+          Page page = (Page)pages.get(key);
+
+          if (page == null)
+            misses++;
+          else
+            hits++;
+
+          return page;
+        }
+
+      /**
+       * Caches the specified page with the specified key, evicting the
+       * least recently used pages as needed to stay within capacity.
+       * Pages larger than the whole capacity are not cached.
+       */
+      synchronized void put (String key, Page page)
+        {
+          if (page.size() > capacity)
+            return;
+
+          Page old = (Page)pages.put(key,page);
+          if (old != null)
+            size -= old.size();
+          size += page.size();
+
+          for (Iterator i = pages.entrySet().iterator(); size > capacity && i.hasNext();)
+            {
+              size -= ((Page)((Map.Entry)i.next()).getValue()).size();
+              i.remove();
+            }
+        }
+
+      /**
+       * Returns the number of cached pages, their total size, and the
+       * numbers of hits and misses.
+       */
+      public synchronized String toString ()
+        {
+          return pages.size()+" pages, "+size+" bytes, "+hits+" hits, "+misses+" misses";
+        }
+    }
+}
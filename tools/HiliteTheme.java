@@ -0,0 +1,479 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class implements the colors and styles used by <tt>Hilite</tt> and
+ * <tt>GenericHilite</tt>, as set in a configuration file (<i>e.g.</i>,
+ * <tt>Hilite.Configuration</tt>) or by default. A theme is compiled once
+ * from the configuration properties into the attribute values and the
+ * opening and closing HTML tags of each kind of token. It is immutable,
+ * and may thus be shared by any number of highlighters, including across
+ * threads.
+ * <p>
+ * Themes loaded from files with <tt>load(String)</tt> are cached by file
+ * path; a cached theme is reused as long as its file's modification time
+ * and size are unchanged.
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ *
+ * @version     Last modified on Sat Oct 17 12:46:03 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class HiliteTheme
+{
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Indices of the highlighting tags. Those of the highlighted token
+   * types are the token types themselves (see <tt>Hilite</tt>); then come
+   * those of annotation comments and of the various keyword types.
+   */
+  final static int BRACKET    = Hilite.BRACKET;
+  final static int COMMENT    = Hilite.COMMENT;
+  final static int NUMBER     = Hilite.NUMBER;
+  final static int STRING     = Hilite.STRING;
+  final static int CLASS      = Hilite.CLASS;
+  final static int CONSTANT   = Hilite.CONSTANT;
+  final static int KEYWORD    = Hilite.KEYWORD;
+
+  final static int ANNOTATION   = 10;
+  final static int MODIFIER_TAG = 11;
+  final static int TYPE_TAG     = 12;
+  final static int CONTROL_TAG  = 13;
+  final static int DECLARE_TAG  = 14;
+  final static int LITERAL_TAG  = 15;
+  final static int OTHER_TAG    = 16;
+  final static int TAG_COUNT    = 17;
+
+  /**
+   * Names of the CSS classes of the highlighting tags, indexed as above.
+   * They differ by more than letter case since pages without a document
+   * type are rendered in quirks mode where class names are not case
+   * sensitive.
+   */
+  final static String[] CSS_CLASSES =
+    { null, "b", "c", "n", "s", "t", "x", "k", null, null,
+      "a", "km", "kt", "kc", "kd", "kl", "ko" };
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Color and style parameters set to the configuration values or the default.
+   */
+  final String FONT_SIZE, BACKGROUND_COLOR, JAVADOC_BG_COLOR, JAVADOC_TEXT_COLOR,
+               SYNTAXDOC_BG_COLOR, SYNTAXDOC_TEXT_COLOR, COMMENT_COLOR,
+               BRACKET_COLOR, KEYWORD_COLOR, MODIFIER_COLOR, TYPE_COLOR,
+               CONTROL_COLOR, DECLARE_COLOR, LITERAL_COLOR, OTHER_COLOR,
+               CLASS_COLOR, CONSTANT_COLOR, NUMBER_COLOR, STRING_COLOR,
+               TEXT_COLOR, ANNOTATE_COLOR, ANNOTATE_TAG_COLOR, COMMENT_STYLE,
+               BRACKET_STYLE, KEYWORD_STYLE, MODIFIER_STYLE, TYPE_STYLE,
+               CONTROL_STYLE, DECLARE_STYLE, LITERAL_STYLE, OTHER_STYLE,
+               CLASS_STYLE, CONSTANT_STYLE, NUMBER_STYLE, STRING_STYLE,
+               PLAIN_STYLE, ANNOTATE_STYLE, ANNOTATE_TAG;
+
+  /**
+   * String indicating that a comment is an annotation.
+   */
+  final String annotateTag;
+
+  /**
+   * Colors and styles of the highlighting tags (<tt>null</tt> if none),
+   * indexed as explained above.
+   */
+  final String[] colors = new String[TAG_COUNT], styles = new String[TAG_COUNT];
+
+  /**
+   * Opening and closing highlighting tags, indexed as explained above.
+   */
+  final String[] openTags = new String[TAG_COUNT], closeTags = new String[TAG_COUNT];
+
+  /**
+   * Opening and closing highlighting tags using CSS classes instead of
+   * inline styles, indexed as explained above.
+   */
+  final String[] openClassTags = new String[TAG_COUNT], closeClassTags = new String[TAG_COUNT];
+
+  /**
+   * Number of characters saved by each pair of CSS class tags with respect
+   * to the corresponding pair of inline tags, indexed as explained above.
+   */
+  final int[] classTagSavings = new int[TAG_COUNT];
+
+  /**
+   * The CSS rules defining the classes used by the CSS class tags.
+   */
+  private final StringBuilder styleSheet = new StringBuilder();
+
+  /**
+   * Modification time and size of the file this theme was loaded from
+   * (or -1 if none).
+   */
+  private final long fileTime, fileSize;
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Constructs a theme from the specified configuration properties.
+   * @param configuration the configuration properties (colors and styles)
+   */
+  public HiliteTheme (Properties configuration)
+    {
+      this(configuration,-1,-1);
+    }
+
+  /**
+   * Constructs a theme from the specified configuration properties loaded
+   * from a file with the specified modification time and size.
+   */
+  private HiliteTheme (Properties configuration, long fileTime, long fileSize)
+    {
+      this.fileTime = fileTime;
+      this.fileSize = fileSize;
+
+      // fonts
+      FONT_SIZE            = configure(configuration,"FONT_SIZE");
+
+      // colors
+      BACKGROUND_COLOR     = configure(configuration,"BACKGROUND_COLOR","#CCCFF");
+      JAVADOC_BG_COLOR     = configure(configuration,"JAVADOC_BG_COLOR","WHITE");
+      JAVADOC_TEXT_COLOR   = configure(configuration,"JAVADOC_TEXT_COLOR","BLACK");
+      SYNTAXDOC_BG_COLOR   = configure(configuration,"SYNTAXDOC_BG_COLOR","WHITE");
+      SYNTAXDOC_TEXT_COLOR = configure(configuration,"SYNTAXDOC_TEXT_COLOR","BLACK");
+      COMMENT_COLOR        = configure(configuration,"COMMENT_COLOR","#777777");
+      BRACKET_COLOR        = configure(configuration,"BRACKET_COLOR","GRAY");
+      KEYWORD_COLOR        = configure(configuration,"KEYWORD_COLOR","BLUE");
+      MODIFIER_COLOR       = configure(configuration,"MODIFIER_COLOR","PURPLE");
+      TYPE_COLOR           = configure(configuration,"TYPE_COLOR","BLUE");
+      CONTROL_COLOR        = configure(configuration,"CONTROL_COLOR","BROWN");
+      DECLARE_COLOR        = configure(configuration,"DECLARE_COLOR","RED");
+      LITERAL_COLOR        = configure(configuration,"LITERAL_COLOR","GREEN");
+      OTHER_COLOR          = configure(configuration,"OTHER_COLOR",KEYWORD_COLOR);
+      CLASS_COLOR          = configure(configuration,"CLASS_COLOR","BLUE");
+      CONSTANT_COLOR       = configure(configuration,"CONSTANT_COLOR","#009900");      // leaf green
+      NUMBER_COLOR         = configure(configuration,"NUMBER_COLOR",LITERAL_COLOR);
+      STRING_COLOR         = configure(configuration,"STRING_COLOR",LITERAL_COLOR);
+      TEXT_COLOR           = configure(configuration,"TEXT_COLOR");
+      ANNOTATE_COLOR       = configure(configuration,"ANNOTATE_COLOR","YELLOW");
+      ANNOTATE_TAG_COLOR   = configure(configuration,"ANNOTATE_TAG_COLOR","RED");
+
+      // styles
+      COMMENT_STYLE        = configure(configuration,"COMMENT_STYLE","EM");
+      BRACKET_STYLE        = configure(configuration,"BRACKET_STYLE");
+      KEYWORD_STYLE        = configure(configuration,"KEYWORD_STYLE","STRONG");
+      MODIFIER_STYLE       = configure(configuration,"MODIFIER_STYLE",KEYWORD_STYLE);
+      TYPE_STYLE           = configure(configuration,"TYPE_STYLE",KEYWORD_STYLE);
+      CONTROL_STYLE        = configure(configuration,"CONTROL_STYLE",KEYWORD_STYLE);
+      DECLARE_STYLE        = configure(configuration,"DECLARE_STYLE",KEYWORD_STYLE);
+      LITERAL_STYLE        = configure(configuration,"LITERAL_STYLE");
+      OTHER_STYLE          = configure(configuration,"OTHER_STYLE",KEYWORD_STYLE);
+      CLASS_STYLE          = configure(configuration,"CLASS_STYLE",KEYWORD_STYLE);
+      CONSTANT_STYLE       = configure(configuration,"CONSTANT_STYLE");
+      NUMBER_STYLE         = configure(configuration,"NUMBER_STYLE");
+      STRING_STYLE         = configure(configuration,"STRING_STYLE");
+      PLAIN_STYLE          = configure(configuration,"PLAIN_STYLE");
+      ANNOTATE_STYLE       = configure(configuration,"ANNOTATE_STYLE");
+      ANNOTATE_TAG         = configure(configuration,"ANNOTATE_TAG","PLEASE READ");
+
+      // annotations
+      annotateTag          = "<BLINK><SPAN STYLE=\"COLOR:"+ANNOTATE_TAG_COLOR+
+                             "\" SIZE=-1><B>"+ANNOTATE_TAG+"</B></SPAN></BLINK>/";
+
+      // highlighting tags
+      for (int i=0; i<TAG_COUNT; i++)
+        openTags[i] = closeTags[i] = openClassTags[i] = closeClassTags[i] = "";
+
+      compileTags(BRACKET,      BRACKET_COLOR,  BRACKET_STYLE);
+      compileTags(COMMENT,      COMMENT_COLOR,  COMMENT_STYLE);
+      compileTags(ANNOTATION,   ANNOTATE_COLOR, ANNOTATE_STYLE);
+      compileTags(NUMBER,       NUMBER_COLOR,   NUMBER_STYLE);
+      compileTags(STRING,       STRING_COLOR,   STRING_STYLE);
+      compileTags(CLASS,        CLASS_COLOR,    CLASS_STYLE);
+      compileTags(CONSTANT,     CONSTANT_COLOR, CONSTANT_STYLE);
+      compileTags(KEYWORD,      KEYWORD_COLOR,  KEYWORD_STYLE);
+      compileTags(MODIFIER_TAG, MODIFIER_COLOR, MODIFIER_STYLE);
+      compileTags(TYPE_TAG,     TYPE_COLOR,     TYPE_STYLE);
+      compileTags(CONTROL_TAG,  CONTROL_COLOR,  CONTROL_STYLE);
+      compileTags(DECLARE_TAG,  DECLARE_COLOR,  DECLARE_STYLE);
+      compileTags(LITERAL_TAG,  LITERAL_COLOR,  LITERAL_STYLE);
+      compileTags(OTHER_TAG,    OTHER_COLOR,    OTHER_STYLE);
+    }
+
+  /**
+   * Gets the specified attribute from the configuration's properties.
+   * @param attribute the property's name
+   */
+  private static String configure (Properties configuration, String attribute)
+    {
+      return configuration.getProperty(attribute);
+    }
+
+  /**
+   * Gets the specified attribute to the value of configuration's
+   * properties if there is one (returning <tt>null</tt> when it is
+   * equal to <tt>\*</tt>). If there is not, returns the specified
+   * default value.
+   * @param attribute the property's name
+   * @param defaultValue the default value
+   */
+  private static String configure (Properties configuration, String attribute, String defaultValue)
+    {
+      String value = configuration.getProperty(attribute);
+      return (value == null) ? defaultValue : (value.equals("*") ? null : value);
+    }
+
+  /**
+   * Compiles the opening and closing tags at the specified index
+   * for the specified color and style (either may be <tt>null</tt>),
+   * both inline and using a CSS class. The class is defined in the style
+   * sheet with the color and with the style if it is an HTML element
+   * that has a CSS equivalent; any other style is kept as an element
+   * within the class tags.
+   */
+  private void compileTags (int index, String color, String style)
+    {
+      colors[index] = color;
+      styles[index] = style;
+
+      String open = "";
+      String close = "";
+
+      if (color != null)
+        {
+          open = "<SPAN STYLE=\"COLOR:"+color+"\">";
+          close = "</SPAN>";
+        }
+      if (style != null)
+        {
+          open = open+"<"+style+">";
+          close = "</"+style+">"+close;
+        }
+
+      openTags[index] = open;
+      closeTags[index] = close;
+
+      String rule = (color == null) ? null : "color:"+color;
+      String element = null;
+
+      if (style != null)
+        {
+          String property = cssProperty(style);
+          if (property == null)
+            element = style;
+          else
+            rule = (rule == null) ? property : rule+";"+property;
+        }
+
+      open = "";
+      close = "";
+
+      if (rule != null)
+        {
+          open = "<span class="+CSS_CLASSES[index]+">";
+          close = "</span>";
+          styleSheet.append(".").append(CSS_CLASSES[index]).append(" { ").append(rule).append(" }\n");
+        }
+      if (element != null)
+        {
+          open = open+"<"+element+">";
+          close = "</"+element+">"+close;
+        }
+
+      openClassTags[index] = open;
+      closeClassTags[index] = close;
+      classTagSavings[index] = openTags[index].length() + closeTags[index].length()
+                             - open.length() - close.length();
+    }
+
+  /**
+   * Returns the CSS property equivalent to the specified HTML style
+   * element, or <tt>null</tt> if there is none.
+   */
+  static String cssProperty (String style)
+    {
+      style = style.toUpperCase();
+
+      if (style.equals("STRONG") || style.equals("B"))
+        return "font-weight:bold";
+      if (style.equals("EM") || style.equals("I") || style.equals("CITE") || style.equals("VAR"))
+        return "font-style:italic";
+      if (style.equals("U") || style.equals("INS"))
+        return "text-decoration:underline";
+      if (style.equals("S") || style.equals("STRIKE") || style.equals("DEL"))
+        return "text-decoration:line-through";
+      if (style.equals("TT") || style.equals("CODE") || style.equals("KBD") || style.equals("SAMP"))
+        return "font-family:monospace";
+      if (style.equals("BIG"))
+        return "font-size:larger";
+      if (style.equals("SMALL"))
+        return "font-size:smaller";
+
+      return null;
+    }
+
+  /**
+   * Returns the CSS rules defining the classes used by the CSS class tags.
+   */
+  public String styleSheet ()
+    {
+      return styleSheet.toString();
+    }
+
+  /**
+   * Writes the CSS rules defining the classes used by the CSS class tags
+   * into the specified style sheet file, between two marker comments. If
+   * the file already exists, whatever it contains outside these markers
+   * is preserved, and rules previously written between them are replaced.
+   */
+  public void writeStyleSheet (File file) throws IOException
+    {
+      String text = "";
+
+      if (file.exists())
+        {
+          InputStream in = new FileInputStream(file);
+          try
+            {
+              text = new String(in.readAllBytes(),"UTF-8");
+            }
+          finally
+            {
+              in.close();
+            }
+        }
+
+      String rules = STYLE_SHEET_BEGIN+"\n"+styleSheet+STYLE_SHEET_END+"\n";
+      int begin = text.indexOf(STYLE_SHEET_BEGIN);
+      int end = text.indexOf(STYLE_SHEET_END);
+
+      if (begin >= 0 && end > begin)
+        {
+          end += STYLE_SHEET_END.length();
+          if (end < text.length() && text.charAt(end) == '\n') end++;
+          text = text.substring(0,begin)+rules+text.substring(end);
+        }
+      else
+        text = (text.length() == 0 || text.endsWith("\n")) ? text+rules : text+"\n"+rules;
+
+      OutputStream out = new FileOutputStream(file);
+      try
+        {
+          out.write(text.getBytes("UTF-8"));
+        }
+      finally
+        {
+          out.close();
+        }
+    }
+
+  /**
+   * Markers delimiting the rules written into a style sheet file.
+   */
+  private final static String STYLE_SHEET_BEGIN = "/* Hilite classes: begin (generated) */";
+  private final static String STYLE_SHEET_END   = "/* Hilite classes: end */";
+
+  /**
+   * Returns a string identifying the version of the configuration file
+   * this theme was loaded from (its modification time and size), so that
+   * whatever is rendered with a theme may be told apart from what was
+   * rendered with an earlier version of it.
+   */
+  public String stamp ()
+    {
+      return Long.toHexString(fileTime)+"-"+Long.toHexString(fileSize);
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * The theme with all the default colors and styles.
+   */
+  public final static HiliteTheme DEFAULT = new HiliteTheme(new Properties());
+
+  /**
+   * Themes loaded from files (canonical file path -> theme).
+   */
+  private final static ConcurrentHashMap cache = new ConcurrentHashMap();
+
+  /**
+   * Returns the theme configured by the specified file, loading it only
+   * if it has not been loaded yet, or if the file has changed since. If
+   * there is no such file, the default theme is returned.
+   * @param fileName the name of the configuration file
+   */
+  public static HiliteTheme load (String fileName)
+    {
+      File file = new File(fileName);
+      String key;
+
+      try
+        {
+          key = file.getCanonicalPath();
+        }
+      catch (IOException e)
+        {
+          key = file.getAbsolutePath();
+        }
+
+      long time = file.lastModified();  // 0 if there is no such file
+      long size = file.length();
+
+      HiliteTheme theme = (HiliteTheme)cache.get(key);
+      if (theme != null && theme.fileTime == time && theme.fileSize == size)
+        return theme;
+
+      synchronized (cache)
+        {
+          theme = (HiliteTheme)cache.get(key);
+          if (theme != null && theme.fileTime == time && theme.fileSize == size)
+            return theme;
+
+          Properties configuration = new Properties();
+
+          if (file.exists())
+            {
+              InputStream in = null;
+              try
+                {
+                  in = new FileInputStream(file);
+                  configuration.load(in);
+                }
+              catch (IOException e)
+                {
+                  System.err.println(e+fileName);
+                }
+              finally
+                {
+                  if (in != null)
+                    try
+                      {
+                        in.close();
+                      }
+                    catch (IOException e)
+                      {
+                      }
+                }
+            }
+          else
+            System.err.println("*** File "+fileName+" not found (using defaults)");
+
+          theme = new HiliteTheme(configuration,time,size);
+          cache.put(key,theme);
+          return theme;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class implements the watch mode of <tt>HiliteCommand</tt>. Once the
+ * files given on the command line have been hilited, it watches their
+ * directories for changes and brings the target directory up to date:
+ * <ul>
+ * <li>a modified file is hilited again;
+ * <li>a new file with the same extension as a file given in the same
+ *     directory is hilited and added to the index;
+ * <li>the output of a deleted file (in every format, with its pages and
+ *     line indexes) is removed, and so is its index entry.
+ * </ul>
+ * Bursts of events (<i>e.g.</i>, an editor saving several files, or writing
+ * a file in several steps) are debounced: changes are only acted upon
+ * once no event has been received for <tt>QUIET_TIME</tt> milliseconds,
+ * and each changed file is then processed once, according to whether it
+ * still exists. The index, if any, is rewritten only when files are added
+ * or removed.
+ *
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 16:52:31 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+public class HiliteWatcher
+{
+  /**
+   * Number of milliseconds without events after which changes are acted upon.
+   */
+  public final static long QUIET_TIME = 250;
+
+  /**
+   * The target directory, the index title, and whether there is an index.
+   */
+  private String targetDir, title;
+  private boolean indexed;
+
+  /**
+   * The incremental build manifest, if any.
+   */
+  private HiliteManifest manifest;
+
+  /**
+   * The jobs hiliting the watched files, in index order (input path -> job).
+   */
+  private LinkedHashMap jobs = new LinkedHashMap();
+
+  /**
+   * The model job for new files (configuration and style files, and
+   * metrics report).
+   */
+  private HiliteCommand.HiliteJob model;
+
+  /**
+   * The watch service, and the watched directories (key -> directory).
+   */
+  private WatchService watcher;
+  private HashMap directories = new HashMap();
+
+  /**
+   * The extensions of the files watched in each directory (directory ->
+   * set of extensions).
+   */
+  private HashMap extensions = new HashMap();
+
+  /**
+   * Constructs a watcher for the inputs of the specified jobs.
+   * @param targetDir the target directory (ending with a separator, or empty)
+   * @param title the title of the index
+   * @param indexed whether there is an index to maintain
+   * @param manifest the incremental build manifest, or <tt>null</tt>
+   * @param jobs the jobs that have hilited the files, in index order
+   */
+  public HiliteWatcher (String targetDir, String title, boolean indexed,
+                        HiliteManifest manifest, Collection jobs) throws IOException
+    {
+      this.targetDir = targetDir;
+      this.title = title;
+      this.indexed = indexed;
+      this.manifest = manifest;
+
+      watcher = FileSystems.getDefault().newWatchService();
+
+      for (Iterator i = jobs.iterator(); i.hasNext();)
+        {
+          HiliteCommand.HiliteJob job = (HiliteCommand.HiliteJob)i.next();
+          Path input = path(job.input);
+
+          this.jobs.put(input,job);
+          model = job;
+
+          Path dir = input.getParent();
+          HashSet suffixes = (HashSet)extensions.get(dir);
+
+          if (suffixes == null)
+            {
+              WatchKey key = dir.register(watcher,
+                                          StandardWatchEventKinds.ENTRY_CREATE,
+                                          StandardWatchEventKinds.ENTRY_MODIFY,
+                                          StandardWatchEventKinds.ENTRY_DELETE);
+              directories.put(key,dir);
+              extensions.put(dir,suffixes = new HashSet());
+            }
+
+          suffixes.add(extension(input));
+        }
+    }
+
+  /**
+   * Watches until interrupted.
+   */
+  public void run () throws IOException, InterruptedException
+    {
+      System.out.println("*** Watching "+directories.size()+" director"+
+                         (directories.size()==1?"y":"ies")+" for changes");
+
+      try
+        {
+          for (;;)
+            {
+              LinkedHashSet changed = new LinkedHashSet();
+              WatchKey key = watcher.take();
+
+              do
+                collect(key,changed);
+              while ((key = watcher.poll(QUIET_TIME,TimeUnit.MILLISECONDS)) != null);
+
+              update(changed);
+            }
+        }
+      finally
+        {
+          watcher.close();
+        }
+    }
+
+  /**
+   * Adds to the specified set the watched files changed according to
+   * the events of the specified key, and resets the key.
+   */
+  private void collect (WatchKey key, LinkedHashSet changed)
+    {
+      Path dir = (Path)directories.get(key);
+
+      for (Iterator i = key.pollEvents().iterator(); i.hasNext();)
+        {
+          WatchEvent event = (WatchEvent)i.next();
+
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+            {                           // events were lost: check all the directory's files
+              for (Iterator j = jobs.keySet().iterator(); j.hasNext();)
+                {
+                  Path input = (Path)j.next();
+                  if (input.getParent().equals(dir))
+                    changed.add(input);
+                }
+              continue;
+            }
+
+          Path input = dir.resolve((Path)event.context());
+          String suffix = extension(input);
+
+          if (jobs.containsKey(input)
+              || (suffix.length() > 0 && ((HashSet)extensions.get(dir)).contains(suffix)))
+            changed.add(input);
+        }
+
+      key.reset();
+    }
+
+  /**
+   * Hilites the changed files that exist, and removes the output of those
+   * that don't; then updates the manifest, the index, and the metrics
+   * report.
+   */
+  private void update (LinkedHashSet changed) throws IOException
+    {
+      boolean listChanged = false;
+
+      for (Iterator i = changed.iterator(); i.hasNext();)
+        {
+          Path input = (Path)i.next();
+          HiliteCommand.HiliteJob job = (HiliteCommand.HiliteJob)jobs.get(input);
+
+          if (Files.isRegularFile(input))
+            {
+              if (job == null)
+                {
+                  job = newJob(input);
+                  jobs.put(input,job);
+                  listChanged = true;
+                }
+              else
+                job.clobber = true;     // the output is ours to overwrite
+
+              if (!job.isUpToDate())
+                job.run();
+            }
+          else if (job != null)
+            {
+              jobs.remove(input);
+              listChanged = true;
+
+              if (HiliteOutput.delete(job.dir+job.output,Hilite.renderFormats,job.pages))
+                System.out.println("*** Removed hilited file:\t"+HiliteOutput.describe(job.output));
+
+              if (manifest != null)
+                manifest.remove(job.output);
+            }
+        }
+
+      if (manifest != null)
+        manifest.save();
+
+      if (indexed && listChanged)
+        HiliteCommand.writeIndex(targetDir,title,jobs.values());
+
+      if (model.report != null)
+        model.report.write(HiliteCommand.getOption("metrics"));
+    }
+
+  /**
+   * Returns a job hiliting the specified new file like the others (its
+   * output, if any, is ours to overwrite, as theirs).
+   */
+  private HiliteCommand.HiliteJob newJob (Path input)
+    {
+      String name = input.getFileName().toString();
+      String output = name.substring(0,name.length()-extension(input).length())+HiliteCommand.outputExtension();
+
+      HiliteCommand.HiliteJob job
+        = new HiliteCommand.HiliteJob(input.toString(),model.configuration,model.stylefile,
+                                      output,targetDir,true);
+      job.name = name;
+      job.manifest = manifest;
+      job.report = model.report;
+
+      return job;
+    }
+
+  /**
+   * Returns the absolute normalized path of the specified file name.
+   */
+  private static Path path (String fileName)
+    {
+      return Paths.get(fileName).toAbsolutePath().normalize();
+    }
+
+  /**
+   * Returns the extension of the specified file (including the dot), or
+   * the empty string if it has none.
+   */
+  private static String extension (Path file)
+    {
+      String name = file.getFileName().toString();
+      int dot = name.lastIndexOf('.');
+
+      return (dot <= 0) ? "" : name.substring(dot);
+    }
+}
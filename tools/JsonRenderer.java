@@ -0,0 +1,291 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class renders the token streams of <tt>Hilite</tt> and
+ * <tt>GenericHilite</tt> as JSON rather than HTML, for clients that do
+ * their own rendering. Each highlighted token is classified by the short
+ * name of its CSS class (see <tt>HiliteTheme</tt>), so that a client may
+ * style it with the style sheet written in CSS class mode:
+ * <tt>b</tt> (bracket), <tt>c</tt> (comment, including documentation
+ * comments), <tt>n</tt> (number), <tt>s</tt> (string), <tt>t</tt> (class
+ * name), <tt>x</tt> (constant), <tt>a</tt> (annotation), and <tt>k</tt>
+ * (keyword) or, for a keyword of a known category, <tt>km</tt>
+ * (modifier), <tt>kt</tt> (type), <tt>kc</tt> (control), <tt>kd</tt>
+ * (declaration), <tt>kl</tt> (literal), or <tt>ko</tt> (other). The
+ * rest of the source is plain text.
+ * <p>
+ * A source is rendered in one of two formats:
+ * <ul>
+ * <li><tt>JSON</tt>: one compact object holding the offsets (in UTF-16
+ * units) of the highlighted tokens in the source, but not the source
+ * itself, which the client is expected to have, <i>e.g.</i>,
+ * <pre>
+ * {"source":"A.java","tokens":[[0,5,"kd"],[6,7,"t"],[8,9,"b"]],"length":12}
+ * </pre>
+ * <li><tt>JSON_LINES</tt>: one value per line, starting with an object
+ * naming the source, followed by the spans of the source in order, each
+ * an array of its class (unless it is plain text) and its text,
+ * <i>e.g.</i>,
+ * <pre>
+ * {"source":"A.java"}
+ * ["kd","class"]
+ * [" "]
+ * ["t","A"]
+ * </pre>
+ * </ul>
+ * Either way, the output is written as the tokens are read, without
+ * holding the whole source.
+ *
+ * @see         TokenRenderer
+ * @see         HiliteTheme
+ * @see         HiliteCommand
+ * @see         HiliteServer
+ *
+ * @version     Last modified on Sat Oct 17 13:41:09 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.Writer;
+import java.io.IOException;
+
+public class JsonRenderer implements TokenRenderer
+{
+  /**
+   * The output formats.
+   */
+  public final static int JSON       = 1;
+  public final static int JSON_LINES = 2;
+
+  /**
+   * The output format.
+   */
+  private final int format;
+
+  /**
+   * The output writer.
+   */
+  private final Writer out;
+
+  /**
+   * The offset in the source of the start of the current token stream.
+   */
+  private int base;
+
+  /**
+   * Whether a token has been written (in the <tt>JSON</tt> format).
+   */
+  private boolean first;
+
+  /**
+   * Constructs a renderer writing to the specified writer in the specified
+   * format (<tt>JSON</tt> or <tt>JSON_LINES</tt>).
+   */
+  public JsonRenderer (Writer out, int format)
+    {
+      if (format != JSON && format != JSON_LINES)
+        throw new IllegalArgumentException("Bad JSON format: "+format);
+
+      this.out = out;
+      this.format = format;
+    }
+
+  /**
+   * Returns the file extension of the specified format.
+   */
+  public static String extension (int format)
+    {
+      return (format == JSON_LINES) ? ".jsonl" : ".json";
+    }
+
+  /**
+   * Returns the short name of the class of the token at the specified index
+   * of the specified stream, or <tt>null</tt> if it is plain text.
+   */
+  static String tokenClass (TokenStream tokens, int i)
+    {
+      if (tokens.type(i) == Hilite.JAVADOC)       // or GenericHilite.SYNTAXDOC
+        return HiliteTheme.CSS_CLASSES[HiliteTheme.COMMENT];
+
+      return HiliteTheme.CSS_CLASSES[tokens.tag(i)];
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Starts rendering the source with the specified name.
+   */
+  public void start (String name) throws IOException
+    {
+      base = 0;
+      first = true;
+
+      out.write("{\"source\":");
+      writeString(name);
+      out.write((format == JSON) ? ",\"tokens\":[" : "}\n");
+    }
+
+  /**
+   * Renders the tokens of the specified stream.
+   */
+  public void render (TokenStream tokens, boolean last) throws IOException
+    {
+      if (format == JSON)
+        renderOffsets(tokens);
+      else
+        renderSpans(tokens,last);
+
+      if (!last && tokens.size() > 0)
+        base += tokens.end(tokens.size()-1);
+
+      if (last)
+        base += tokens.length();
+    }
+
+  /**
+   * Ends rendering the source.
+   */
+  public void end () throws IOException
+    {
+      if (format == JSON)
+        out.write("],\"length\":"+base+"}\n");
+
+      out.flush();
+    }
+
+  /**
+   * Writes the offsets and classes of the highlighted tokens of the
+   * specified stream.
+   */
+  private void renderOffsets (TokenStream tokens) throws IOException
+    {
+      for (int i=0; i<tokens.size(); i++)
+        {
+          String tokenClass = tokenClass(tokens,i);
+
+          if (tokenClass == null)
+            continue;
+
+          out.write(first ? "[" : ",[");
+          out.write(Integer.toString(base+tokens.start(i)));
+          out.write(',');
+          out.write(Integer.toString(base+tokens.end(i)));
+          out.write(",\"");
+          out.write(tokenClass);
+          out.write("\"]");
+          first = false;
+        }
+    }
+
+  /**
+   * Writes the spans of the specified stream, one per line: its highlighted
+   * tokens, and the plain text between them (and after the last one if it
+   * is the last chunk of the source).
+   */
+  private void renderSpans (TokenStream tokens, boolean last) throws IOException
+    {
+      char[] text = tokens.text();
+      int plain = 0;
+
+      for (int i=0; i<tokens.size(); i++)
+        {
+          String tokenClass = tokenClass(tokens,i);
+
+          if (tokenClass == null)     // part of the plain text
+            continue;
+
+          writeSpan(null,text,plain,tokens.start(i));
+          writeSpan(tokenClass,text,tokens.start(i),tokens.end(i));
+          plain = tokens.end(i);
+        }
+
+      int end = last ? tokens.length() : (tokens.size() > 0 ? tokens.end(tokens.size()-1) : 0);
+      writeSpan(null,text,plain,end);
+    }
+
+  /**
+   * Writes a span of the specified class (<tt>null</tt> for plain text)
+   * made of the characters of the specified text between the specified
+   * indices, unless there are none.
+   */
+  private void writeSpan (String tokenClass, char[] text, int start, int end) throws IOException
+    {
+      if (start == end)
+        return;
+
+      if (tokenClass == null)
+        out.write('[');
+      else
+        {
+          out.write("[\"");
+          out.write(tokenClass);
+          out.write("\",");
+        }
+
+      writeString(text,start,end);
+      out.write("]\n");
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Writes the specified string as a JSON string.
+   */
+  private void writeString (String s) throws IOException
+    {
+      writeString(s.toCharArray(),0,s.length());
+    }
+
+  /**
+   * Writes the characters of the specified text between the specified
+   * indices as a JSON string. Besides quotes, backslashes, and control
+   * characters, the line and paragraph separators are escaped, since they
+   * may not appear in JavaScript string literals.
+   */
+  private void writeString (char[] text, int start, int end) throws IOException
+    {
+      int run = start;
+
+      out.write('"');
+
+      for (int i=start; i<end; i++)
+        {
+          char c = text[i];
+          String escape;
+
+          switch (c)
+            {
+            case '"':
+              escape = "\\\"";
+              break;
+            case '\\':
+              escape = "\\\\";
+              break;
+            case '\n':
+              escape = "\\n";
+              break;
+            case '\r':
+              escape = "\\r";
+              break;
+            case '\t':
+              escape = "\\t";
+              break;
+            default:
+              if (c >= ' ' && c != '\u2028' && c != '\u2029')
+                continue;
+              escape = String.format("\\u%04x",(int)c);
+            }
+
+          out.write(text,run,i-run);
+          out.write(escape);
+          run = i+1;
+        }
+
+      out.write(text,run,end-run);
+      out.write('"');
+    }
+}
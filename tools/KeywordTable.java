@@ -0,0 +1,143 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This is a table of keywords that is looked up directly on a range of
+ * characters, without building a string for it. It is built once from a
+ * map associating each keyword to its type, as a perfect hash table:
+ * the hashing seed and the table size are chosen so that no two keywords
+ * fall in the same slot. Looking up a word thus amounts to hashing its
+ * characters and comparing them with the only keyword that may be in
+ * the slot they hash to.
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ *
+ * @version     Last modified on Sat Oct 17 03:12:40 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.util.Map;
+import java.util.Iterator;
+
+public class KeywordTable
+{
+  /**
+   * The characters of the keyword in each slot (or <tt>null</tt>).
+   */
+  private char[][] keys;
+
+  /**
+   * The type of the keyword in each slot.
+   */
+  private Object[] values;
+
+  /**
+   * The table size minus one (the size is a power of two).
+   */
+  private int mask;
+
+  /**
+   * The multiplier used for hashing.
+   */
+  private int seed;
+
+  /**
+   * The length of the longest keyword.
+   */
+  private int maxLength;
+
+  /**
+   * Constructs a keyword table from the specified map of keywords to
+   * their types.
+   * @param words a map from keyword strings to keyword types
+   */
+  public KeywordTable (Map words)
+    {
+      for (int size = 2*Integer.highestOneBit(Math.max(words.size(),1));; size *= 2)
+        for (int seed = 31; seed < 1024; seed += 2)
+          if (fill(words,size,seed))
+            return;
+    }
+
+  /**
+   * Tries to store the specified keywords in a table of the specified size
+   * using the specified hashing seed. Returns false if two keywords fall
+   * in the same slot.
+   */
+  private boolean fill (Map words, int size, int seed)
+    {
+      keys = new char[size][];
+      values = new Object[size];
+      mask = size-1;
+      this.seed = seed;
+      maxLength = 0;
+
+      for (Iterator i = words.entrySet().iterator(); i.hasNext();)
+        {
+          Map.Entry entry = (Map.Entry)i.next();
+          char[] key = ((String)entry.getKey()).toCharArray();
+          int slot = hash(key,0,key.length) & mask;
+
+          if (keys[slot] != null)
+            return false;
+
+          keys[slot] = key;
+          values[slot] = entry.getValue();
+          maxLength = Math.max(maxLength,key.length);
+        }
+
+      return true;
+    }
+
+  /**
+   * Returns the hash code of the specified range of characters.
+   */
+  private final int hash (char[] chars, int start, int length)
+    {
+      int h = length;
+
+      for (int i = start, end = start+length; i < end; i++)
+        h = h*seed + chars[i];
+
+      return h ^ (h >>> 16);
+    }
+
+  /**
+   * Returns the type of the keyword made of the specified range of
+   * characters, or <tt>null</tt> if these characters are not a keyword.
+   * @param chars an array of characters
+   * @param start the index of the first character of the word
+   * @param length the number of characters of the word
+   */
+  public final Object get (char[] chars, int start, int length)
+    {
+      if (length > maxLength)
+        return null;
+
+      int slot = hash(chars,start,length) & mask;
+      char[] key = keys[slot];
+
+      if (key == null || key.length != length)
+        return null;
+
+      for (int i = 0; i < length; i++)
+        if (key[i] != chars[start+i])
+          return null;
+
+      return values[slot];
+    }
+
+  /**
+   * Returns the type of the specified word, or <tt>null</tt> if it is
+   * not a keyword.
+   */
+  public final Object get (String word)
+    {
+      return get(word.toCharArray(),0,word.length());
+    }
+}
@@ -0,0 +1,616 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class implements the lexical syntax of a language as highlighted by
+ * <tt>GenericHilite</tt>, as set in a profile file (<i>e.g.</i>,
+ * <tt>Lisp.Profile</tt>) or by default. A profile is compiled once from
+ * the profile properties into tables driving the scanner:
+ * <ul>
+ * <li>a table of character classes (identifier start and part, number
+ *     start and part, quote, bracket) for the characters <tt>0</tt> to
+ *     <tt>255</tt>, any other code point being classified by rules
+ *     (<tt>java</tt>, <tt>letter</tt>, <tt>digit</tt>);
+ * <li>a deterministic automaton recognizing the longest comment opener
+ *     starting at a character (a trie of the openers);
+ * <li>for each comment opener, a deterministic automaton recognizing the
+ *     end of the comment (the matcher of its closer);
+ * <li>a perfect hash table of the keywords (see <tt>KeywordTable</tt>).
+ * </ul>
+ * A profile is immutable, and may thus be shared by any number of
+ * highlighters, including across threads. Profiles loaded from files with
+ * <tt>load(String)</tt> are cached by file path; a cached profile is
+ * reused as long as its file's modification time and size are unchanged.
+ * <p>
+ * The profile properties are the following, each of which defaults to
+ * the syntax highlighted by <tt>GenericHilite</tt> when it is not set
+ * (an empty value means none):
+ * <ul>
+ * <li><tt>NAME</tt>: the name of the language;
+ * <li><tt>MODIFIER_KEYWORDS</tt>, <tt>TYPE_KEYWORDS</tt>,
+ *     <tt>CONTROL_KEYWORDS</tt>, <tt>DECLARE_KEYWORDS</tt>,
+ *     <tt>LITERAL_KEYWORDS</tt>, <tt>OTHER_KEYWORDS</tt>: the keywords
+ *     of each category;
+ * <li><tt>IDENTIFIER_START</tt>, <tt>IDENTIFIER_PART</tt>: the characters
+ *     that may start, and be part of, an identifier;
+ * <li><tt>NUMBER_START</tt>, <tt>NUMBER_PART</tt>: the characters that
+ *     may start, and be part of, a number;
+ * <li><tt>CASE_IDENTIFIERS</tt>: whether capitalized identifiers are
+ *     highlighted as class names and uppercase ones as constant names;
+ * <li><tt>LINE_COMMENT</tt>: the openers of comments ending with the line;
+ * <li><tt>BLOCK_COMMENT</tt>: the openers and closers of block comments,
+ *     in pairs;
+ * <li><tt>DOC_COMMENT</tt>: the openers and closers of documentation
+ *     comments, in pairs (the last character of an opener is ignored in
+ *     the comment, like the stars of a Javadoc comment);
+ * <li><tt>QUOTES</tt>: the characters quoting strings;
+ * <li><tt>ESCAPE</tt>: the character escaping the next one in a string;
+ * <li><tt>BRACKETS</tt>: the bracket characters;
+ * <li><tt>ANNOTATE</tt>: the character marking a comment as an annotation
+ *     when it follows the comment opener.
+ * </ul>
+ * Lists are separated by whitespace. A character class is a list of
+ * characters and of the rules <tt>java</tt> (Java identifier characters),
+ * <tt>letter</tt>, and <tt>digit</tt>. Keywords, delimiters, quotes, and
+ * brackets are made of characters <tt>0</tt> to <tt>255</tt>. Since the
+ * file is read as properties, a backslash is written twice. For example,
+ * <pre>
+ * NAME              = Lisp
+ * CONTROL_KEYWORDS  = if cond when unless loop do
+ * DECLARE_KEYWORDS  = defun defmacro defvar defparameter let let*
+ * LITERAL_KEYWORDS  = nil t
+ * IDENTIFIER_START  = letter * + ! ? - _ &lt; &gt; = /
+ * IDENTIFIER_PART   = letter digit * + ! ? - _ &lt; &gt; = /
+ * NUMBER_PART       = digit .
+ * CASE_IDENTIFIERS  = false
+ * LINE_COMMENT      = ;
+ * BLOCK_COMMENT     = #| |#
+ * DOC_COMMENT       =
+ * QUOTES            = "
+ * ESCAPE            = \\
+ * BRACKETS          = ( )
+ * </pre>
+ *
+ * @see         GenericHilite
+ * @see         KeywordTable
+ *
+ * @version     Last modified on Sat Oct 17 17:21:31 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LanguageProfile
+{
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Names of the keyword categories, and the indices of their highlighting
+   * tags (see <tt>HiliteTheme</tt>).
+   */
+  final static String[] KEYWORD_CATEGORIES =
+    { "MODIFIER", "TYPE", "CONTROL", "DECLARE", "LITERAL", "OTHER" };
+
+  final static int[] KEYWORD_TAGS =
+    { HiliteTheme.MODIFIER_TAG, HiliteTheme.TYPE_TAG, HiliteTheme.CONTROL_TAG,
+      HiliteTheme.DECLARE_TAG, HiliteTheme.LITERAL_TAG, HiliteTheme.OTHER_TAG };
+
+  /**
+   * Default keywords of each category.
+   */
+  private final static String[] DEFAULT_KEYWORDS =
+    {
+      "abstract final native private protected public static synchronized transient volatile",
+      "boolean byte char double float int long short void",
+      "break case catch continue default do else finally for goto if return switch throw try while",
+      "class const extends implements import interface package throws",
+      "null true false",
+      "instanceof new super this"
+    };
+
+  /**
+   * Character classes, as indices of bits in the character table.
+   */
+  final static int IDENTIFIER_START = 0;
+  final static int IDENTIFIER_PART  = 1;
+  final static int NUMBER_START     = 2;
+  final static int NUMBER_PART      = 3;
+  final static int QUOTE            = 4;
+  final static int BRACKET          = 5;
+
+  /**
+   * Rules classifying the code points beyond the character table, as bits.
+   */
+  private final static int JAVA_RULE   = 1;
+  private final static int LETTER_RULE = 2;
+  private final static int DIGIT_RULE  = 4;
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * The name of the language.
+   */
+  public final String name;
+
+  /**
+   * The keywords (keyword -> index of its highlighting tags, as an
+   * <tt>Integer</tt>).
+   */
+  final KeywordTable keywords;
+
+  /**
+   * Whether capitalized identifiers are class names and uppercase ones
+   * constant names.
+   */
+  final boolean caseIdentifiers;
+
+  /**
+   * The escape and annotation characters (or -1 if none).
+   */
+  final int escapeChar, annotateChar;
+
+  /**
+   * The classes of the characters <tt>0</tt> to <tt>255</tt> (one bit per
+   * class), and the rules classifying any other code point (per class).
+   */
+  private final byte[] classes = new byte[256];
+  private final int[] rules = new int[6];
+
+  /**
+   * The comment opener automaton: the transitions of each state on the
+   * characters <tt>0</tt> to <tt>255</tt> (0 if none, since the initial
+   * state 0 is never entered again), and the delimiter recognized in
+   * each state (or -1 if none).
+   */
+  private final int[][] openerStates;
+  private final int[] openerDelimiters;
+
+  /**
+   * The length of the longest comment opener.
+   */
+  final int maxOpenerLength;
+
+  /**
+   * The comment delimiters: their openers, the closer automata (the
+   * transitions of each state on the characters <tt>0</tt> to
+   * <tt>255</tt>, a state being the length of the closer's prefix just
+   * read), the lengths of the closers, and whether they delimit
+   * documentation comments.
+   */
+  private final String[] openers;
+  private final int[][][] closerStates;
+  private final int[] closerLengths;
+  private final boolean[] docComments;
+
+  /**
+   * Modification time and size of the file this profile was loaded from
+   * (or -1 if none).
+   */
+  private final long fileTime, fileSize;
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Constructs a profile from the specified profile properties.
+   * @param profile the profile properties (lexical syntax)
+   * @throws IllegalArgumentException if a property is malformed
+   */
+  public LanguageProfile (Properties profile)
+    {
+      this(profile,-1,-1);
+    }
+
+  /**
+   * Constructs a profile from the specified profile properties loaded
+   * from a file with the specified modification time and size.
+   */
+  private LanguageProfile (Properties profile, long fileTime, long fileSize)
+    {
+      this.fileTime = fileTime;
+      this.fileSize = fileSize;
+
+      name = configure(profile,"NAME","Generic");
+
+      // character classes
+      classify(IDENTIFIER_START,list(profile,"IDENTIFIER_START","java"));
+      classify(IDENTIFIER_PART, list(profile,"IDENTIFIER_PART","java"));
+      classify(NUMBER_START,    list(profile,"NUMBER_START","digit"));
+      classify(NUMBER_PART,     list(profile,"NUMBER_PART","digit"));
+      classify(QUOTE,           list(profile,"QUOTES","\""));
+      classify(BRACKET,         list(profile,"BRACKETS","( ) { } [ ]"));
+
+      // keywords
+      HashMap words = new HashMap();
+      for (int i=0; i<KEYWORD_CATEGORIES.length; i++)
+        {
+          String[] list = list(profile,KEYWORD_CATEGORIES[i]+"_KEYWORDS",DEFAULT_KEYWORDS[i]);
+          for (int j=0; j<list.length; j++)
+            words.put(latin1(list[j]),Integer.valueOf(KEYWORD_TAGS[i]));
+        }
+      keywords = new KeywordTable(words);
+
+      caseIdentifiers = Boolean.valueOf(configure(profile,"CASE_IDENTIFIERS","true")).booleanValue();
+      escapeChar = character(profile,"ESCAPE","\\");
+      annotateChar = character(profile,"ANNOTATE","$");
+
+      // comment delimiters
+      String[] lineComments = list(profile,"LINE_COMMENT","//");
+      String[] blockComments = list(profile,"BLOCK_COMMENT","/* */");
+      String[] docCommentPairs = list(profile,"DOC_COMMENT","/** */");
+      String[][] delimiters = new String[lineComments.length+blockComments.length/2+docCommentPairs.length/2][];
+      int count = 0;
+      for (int i=0; i<lineComments.length; i++)
+        delimiters[count++] = new String[] { lineComments[i], "\n", null };
+      count = pairs(delimiters,count,blockComments,"BLOCK_COMMENT",false);
+      count = pairs(delimiters,count,docCommentPairs,"DOC_COMMENT",true);
+
+      openers = new String[count];
+      closerStates = new int[count][][];
+      closerLengths = new int[count];
+      docComments = new boolean[count];
+
+      int stateCount = 1;
+      for (int d=0; d<count; d++)
+        stateCount += delimiters[d][0].length();
+
+      int[][] states = new int[stateCount][];
+      states[0] = new int[256];
+      stateCount = 1;
+      int maxLength = 0;
+
+      for (int d=0; d<count; d++)
+        {
+          String[] delimiter = delimiters[d];
+
+          openers[d] = delimiter[0];
+          closerStates[d] = matcher(delimiter[1]);
+          closerLengths[d] = delimiter[1].length();
+          docComments[d] = (delimiter[2] != null);
+          maxLength = Math.max(maxLength,openers[d].length());
+
+          int state = 0;
+          for (int i=0; i<openers[d].length(); i++)
+            {
+              int[] next = states[state];
+              if (next[openers[d].charAt(i)] == 0)
+                {
+                  next[openers[d].charAt(i)] = stateCount;
+                  states[stateCount++] = new int[256];
+                }
+              state = next[openers[d].charAt(i)];
+            }
+        }
+
+      openerStates = Arrays.copyOf(states,stateCount);
+      openerDelimiters = new int[openerStates.length];
+      Arrays.fill(openerDelimiters,-1);
+      maxOpenerLength = maxLength;
+
+      for (int d=0; d<count; d++)       // a later delimiter overrides an earlier one
+        {
+          int state = 0;
+          for (int i=0; i<openers[d].length(); i++)
+            state = openerStates[state][openers[d].charAt(i)];
+          openerDelimiters[state] = d;
+        }
+    }
+
+  /**
+   * Gets the specified attribute to the value of the profile's properties
+   * if there is one, or to the specified default value otherwise.
+   */
+  private static String configure (Properties profile, String attribute, String defaultValue)
+    {
+      String value = profile.getProperty(attribute);
+      return (value == null) ? defaultValue : value.trim();
+    }
+
+  /**
+   * Returns the whitespace-separated elements of the specified attribute.
+   */
+  private static String[] list (Properties profile, String attribute, String defaultValue)
+    {
+      String value = configure(profile,attribute,defaultValue);
+      return (value.length() == 0) ? new String[0] : value.split("\\s+");
+    }
+
+  /**
+   * Returns the single character of the specified attribute, or -1 if it
+   * is empty.
+   */
+  private static int character (Properties profile, String attribute, String defaultValue)
+    {
+      String value = configure(profile,attribute,defaultValue);
+
+      if (value.length() == 0)
+        return -1;
+
+      if (value.length() > 1)
+        throw new IllegalArgumentException("Bad "+attribute+" ("+value+"): one character expected");
+
+      return latin1(value).charAt(0);
+    }
+
+  /**
+   * Returns the specified string after checking that it is made of the
+   * characters <tt>0</tt> to <tt>255</tt>.
+   */
+  private static String latin1 (String s)
+    {
+      for (int i=0; i<s.length(); i++)
+        if (s.charAt(i) > 0xFF)
+          throw new IllegalArgumentException("Bad character in "+s+" (Latin-1 expected)");
+      return s;
+    }
+
+  /**
+   * Adds the specified characters and rules to the specified class.
+   */
+  private void classify (int cls, String[] elements)
+    {
+      int bit = 1 << cls;
+
+      for (int i=0; i<elements.length; i++)
+        {
+          int rule = 0;
+
+          if (elements[i].equals("java"))
+            rule = JAVA_RULE;
+          else if (elements[i].equals("letter"))
+            rule = LETTER_RULE;
+          else if (elements[i].equals("digit"))
+            rule = DIGIT_RULE;
+          else
+            {
+              String chars = latin1(elements[i]);
+              for (int j=0; j<chars.length(); j++)
+                classes[chars.charAt(j)] |= bit;
+              continue;
+            }
+
+          rules[cls] |= rule;
+
+          for (int c=0; c<classes.length; c++)
+            if (ruleHolds(cls,rule,c))
+              classes[c] |= bit;
+        }
+    }
+
+  /**
+   * Returns true iff the specified rule of the specified class holds for
+   * the specified code point.
+   */
+  private static boolean ruleHolds (int cls, int rule, int c)
+    {
+      switch (rule)
+        {
+        case JAVA_RULE:
+          return (cls == IDENTIFIER_START || cls == NUMBER_START)
+            ? CharTable.isIdentifierStart(c)
+            : CharTable.isIdentifierPart(c);
+        case LETTER_RULE:
+          return CharTable.isLetter(c);
+        case DIGIT_RULE:
+          return CharTable.isDigit(c);
+        }
+      return false;
+    }
+
+  /**
+   * Adds to the specified delimiters, from the specified index on, those
+   * of the specified list of openers and closers, and returns the index
+   * following the last one added.
+   */
+  private static int pairs (String[][] delimiters, int count, String[] list, String attribute, boolean doc)
+    {
+      if (list.length % 2 != 0)
+        throw new IllegalArgumentException("Bad "+attribute+": pairs of opener and closer expected");
+
+      for (int i=0; i<list.length; i+=2)
+        delimiters[count++] = new String[] { latin1(list[i]), latin1(list[i+1]), doc ? "doc" : null };
+
+      return count;
+    }
+
+  /**
+   * Returns the automaton recognizing the end of the specified string in
+   * a stream of characters: in state <i>j</i>, the first <i>j</i>
+   * characters of the string have just been read, and the string has
+   * been read once the state is its length.
+   */
+  private static int[][] matcher (String s)
+    {
+      int[][] states = new int[s.length()][];
+
+      states[0] = new int[256];
+      states[0][s.charAt(0)] = 1;
+
+      for (int j=1, x=0; j<s.length(); j++)
+        {
+          states[j] = states[x].clone();         // on a mismatch, behave as the longest border
+          states[j][s.charAt(j)] = j+1;
+          x = states[x][s.charAt(j)];
+        }
+
+      return states;
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Returns true iff the specified code point is in the specified class.
+   */
+  final boolean isIn (int cls, int c)
+    {
+      if ((c & ~0xFF) == 0)
+        return (classes[c] & (1 << cls)) != 0;
+
+      int rule = rules[cls];
+
+      return c > 0 && rule != 0
+          && ((rule & JAVA_RULE) != 0 && ruleHolds(cls,JAVA_RULE,c)
+              || (rule & LETTER_RULE) != 0 && ruleHolds(cls,LETTER_RULE,c)
+              || (rule & DIGIT_RULE) != 0 && ruleHolds(cls,DIGIT_RULE,c));
+    }
+
+  /**
+   * Returns the state of the comment opener automaton reached from the
+   * specified state on the specified character, or 0 if none.
+   */
+  final int openerState (int state, int c)
+    {
+      return ((c & ~0xFF) == 0) ? openerStates[state][c] : 0;
+    }
+
+  /**
+   * Returns the delimiter whose opener is recognized in the specified state
+   * of the comment opener automaton, or -1 if none.
+   */
+  final int delimiter (int state)
+    {
+      return openerDelimiters[state];
+    }
+
+  /**
+   * Returns the opener of the specified delimiter.
+   */
+  final String opener (int delimiter)
+    {
+      return openers[delimiter];
+    }
+
+  /**
+   * Returns true iff the specified delimiter delimits documentation comments.
+   */
+  final boolean isDocComment (int delimiter)
+    {
+      return docComments[delimiter];
+    }
+
+  /**
+   * Returns the state of the specified delimiter's closer automaton reached
+   * from the specified state on the specified character.
+   */
+  final int closerState (int delimiter, int state, int c)
+    {
+      return ((c & ~0xFF) == 0) ? closerStates[delimiter][state][c] : 0;
+    }
+
+  /**
+   * Returns the length of the specified delimiter's closer (<i>i.e.</i>,
+   * the state of its automaton once it has been read).
+   */
+  final int closerLength (int delimiter)
+    {
+      return closerLengths[delimiter];
+    }
+
+  /**
+   * Returns a string identifying the version of the profile file this
+   * profile was loaded from (its modification time and size).
+   */
+  public String stamp ()
+    {
+      return Long.toHexString(fileTime)+"-"+Long.toHexString(fileSize);
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * The profile of the syntax highlighted by default.
+   */
+  public final static LanguageProfile DEFAULT = new LanguageProfile(new Properties());
+
+  /**
+   * Profiles loaded from files (canonical file path -> profile).
+   */
+  private final static ConcurrentHashMap cache = new ConcurrentHashMap();
+
+  /**
+   * Returns the profile set in the specified file, loading and compiling it
+   * only if it has not been loaded yet, or if the file has changed since.
+   * If there is no such file, the default profile is returned.
+   * @param fileName the name of the profile file
+   * @throws IllegalArgumentException if a property is malformed
+   */
+  public static LanguageProfile load (String fileName)
+    {
+      File file = new File(fileName);
+      String key;
+
+      try
+        {
+          key = file.getCanonicalPath();
+        }
+      catch (IOException e)
+        {
+          key = file.getAbsolutePath();
+        }
+
+      long time = file.lastModified();  // 0 if there is no such file
+      long size = file.length();
+
+      LanguageProfile profile = (LanguageProfile)cache.get(key);
+      if (profile != null && profile.fileTime == time && profile.fileSize == size)
+        return profile;
+
+      synchronized (cache)
+        {
+          profile = (LanguageProfile)cache.get(key);
+          if (profile != null && profile.fileTime == time && profile.fileSize == size)
+            return profile;
+
+          Properties properties = new Properties();
+
+          if (file.exists())
+            {
+              InputStream in = null;
+              try
+                {
+                  in = new FileInputStream(file);
+                  properties.load(in);
+                }
+              catch (IOException e)
+                {
+                  System.err.println(e+fileName);
+                }
+              finally
+                {
+                  if (in != null)
+                    try
+                      {
+                        in.close();
+                      }
+                    catch (IOException e)
+                      {
+                      }
+                }
+            }
+          else
+            System.err.println("*** File "+fileName+" not found (using defaults)");
+
+          try
+            {
+              profile = new LanguageProfile(properties,time,size);
+            }
+          catch (IllegalArgumentException e)
+            {
+              throw new IllegalArgumentException(e.getMessage()+" in "+fileName);
+            }
+
+          cache.put(key,profile);
+          return profile;
+        }
+    }
+}
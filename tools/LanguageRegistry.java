@@ -0,0 +1,149 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class maps file extensions to the language profiles (see
+ * <tt>LanguageProfile</tt>) with which <tt>HiliteCommand</tt> hilites the
+ * files of a batch: a file whose extension is registered is hilited by
+ * <tt>GenericHilite</tt> in the syntax of the corresponding profile, and
+ * any other file by <tt>Hilite</tt>. The registry is read from a file of
+ * properties associating extensions (with or without their dot, in any
+ * letter case) to profile files (relative to the registry file's
+ * directory), <i>e.g.</i>,
+ * <pre>
+ * .lisp = Lisp.Profile
+ * .el   = Lisp.Profile
+ * .pas  = Pascal.Profile
+ * </pre>
+ * All the profiles are loaded and compiled when the registry is read, so
+ * that a malformed profile is reported before any file is hilited; they
+ * are then found in the cache of <tt>LanguageProfile</tt>, which shares
+ * each compiled profile among all the highlighters, including those of
+ * concurrent worker threads.
+ *
+ * @see         LanguageProfile
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 17:29:39 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+public class LanguageRegistry
+{
+  /**
+   * The registered profile files (extension, with its dot and in lower
+   * case -> profile file name).
+   */
+  private final Properties profiles = new Properties();
+
+  /**
+   * Constructs a registry from the specified registry file, and loads the
+   * profiles it registers.
+   * @param fileName the name of the registry file
+   * @throws IOException if the registry file cannot be read
+   * @throws IllegalArgumentException if a profile is malformed
+   */
+  public LanguageRegistry (String fileName) throws IOException
+    {
+      File file = new File(fileName);
+      Properties registry = new Properties();
+      InputStream in = new FileInputStream(file);
+
+      try
+        {
+          registry.load(in);
+        }
+      finally
+        {
+          in.close();
+        }
+
+      File dir = file.getAbsoluteFile().getParentFile();
+
+      String[] extensions = registry.stringPropertyNames().toArray(new String[0]);
+
+      for (int i=0; i<extensions.length; i++)
+        {
+          File profile = new File(registry.getProperty(extensions[i]).trim());
+
+          if (!profile.isAbsolute())
+            profile = new File(dir,profile.getPath());
+
+          register(extensions[i],profile.getPath());
+        }
+    }
+
+  /**
+   * Registers the specified profile file for the specified extension, and
+   * loads the profile.
+   * @param extension the extension (with or without its dot)
+   * @param profileFile the name of the profile file
+   * @throws IllegalArgumentException if the profile is malformed
+   */
+  public void register (String extension, String profileFile)
+    {
+      extension = extension.trim().toLowerCase(Locale.ROOT);
+      if (!extension.startsWith("."))
+        extension = "."+extension;
+
+      LanguageProfile.load(profileFile);
+      profiles.setProperty(extension,profileFile);
+    }
+
+  /**
+   * Returns the name of the profile file registered for the extension of
+   * the specified file, or <tt>null</tt> if there is none.
+   */
+  public String profileFile (String fileName)
+    {
+      String name = new File(fileName).getName();
+      int dot = name.lastIndexOf('.');
+
+      if (dot <= 0)
+        return null;
+
+      return profiles.getProperty(name.substring(dot).toLowerCase(Locale.ROOT));
+    }
+
+  /**
+   * Returns a string describing the registered extensions and the versions
+   * of their profiles, so that changing any of them may be detected.
+   */
+  public String stamp ()
+    {
+      StringBuilder stamp = new StringBuilder();
+      String[] extensions = profiles.stringPropertyNames().toArray(new String[0]);
+
+      Arrays.sort(extensions);
+
+      for (int i=0; i<extensions.length; i++)
+        {
+          String profileFile = profiles.getProperty(extensions[i]);
+
+          stamp.append(extensions[i]).append('=').append(profileFile).append(':')
+               .append(LanguageProfile.load(profileFile).stamp()).append(' ');
+        }
+
+      return stamp.toString();
+    }
+
+  /**
+   * Returns the number of registered extensions.
+   */
+  public int size ()
+    {
+      return profiles.size();
+    }
+}
@@ -0,0 +1,456 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class marks each source line in the HTML rendering of a source with
+ * an anchor named after its number (<i>e.g.</i>, <tt>&lt;A
+ * NAME="L1234"&gt;&lt;/A&gt;</tt>, so that <tt>File.html#L1234</tt> shows
+ * line 1234), and writes beside each HTML file a binary index of its lines
+ * (in a file of the same name ending in <tt>.idx</tt>), so that tools may
+ * extract a range of lines from the HTML or the source by seeking rather
+ * than parsing. All the numbers of the index are big-endian:
+ * <pre>
+ * int    magic number (0x484C4958, <tt>"HLIX"</tt>)
+ * int    version (1)
+ * int    number of the first line of the HTML file
+ * int    number of lines n of the HTML file
+ * n+1 records of:
+ *   long byte offset in the HTML file of the anchor of the line
+ *   long byte offset in the source file of the start of the line
+ * </pre>
+ * The record of line <i>l</i> is thus at offset 16+16(<i>l</i>-<i>first</i>),
+ * and the lines from <i>l</i> to <i>m</i> lie between the offsets of the
+ * records of <i>l</i> and <i>m</i>+1 (the last record holds the offsets
+ * of the end of the source in the HTML and the source). Byte offsets are
+ * those of the encoding in the default character set, in which the sources
+ * are read and the HTML files written; those in the HTML are those of the
+ * plain (uncompressed) file. A range of HTML lines may start or end within
+ * a highlighting span, and the lines of a documentation comment, which is
+ * formatted as a whole, are all anchored just before it.
+ * <p>
+ * A line index is used for one source, by one renderer, as a writer
+ * filtering the HTML output of each of its files (more than one if it is
+ * paginated; see <tt>PageRenderer</tt>): it counts the bytes written and,
+ * between <tt>begin</tt> and <tt>finish</tt>, writes the anchor of each line
+ * just before the first thing written on it, so that a line ending a page
+ * is anchored on the next one.
+ *
+ * @see         Hilite
+ * @see         GenericHilite
+ * @see         HiliteCommand
+ *
+ * @version     Last modified on Sat Oct 17 16:58:44 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.Writer;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class LineIndex extends FilterWriter
+{
+  /**
+   * The magic number and version of the index files.
+   */
+  public final static int MAGIC = 0x484C4958;
+  public final static int VERSION = 1;
+
+  /**
+   * The suffix appended to the names of the HTML files to name their index.
+   */
+  public final static String SUFFIX = ".idx";
+
+  /**
+   * The anchor of a line, before and after its number.
+   */
+  private final static String ANCHOR_START = "<A NAME=\"L", ANCHOR_END = "\"></A>";
+
+  /**
+   * The character set in which bytes are counted.
+   */
+  private final Charset charset = Charset.defaultCharset();
+
+  /**
+   * Whether the character set encodes each character in one byte, or is
+   * UTF-8 (otherwise, characters are encoded to be counted).
+   */
+  private final boolean singleByte = charset.newEncoder().maxBytesPerChar() == 1;
+  private final boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+
+  /**
+   * The byte offsets in the source of the start of each line read so far,
+   * their number, and the number of bytes read so far.
+   */
+  private long[] sourceStarts = new long[1024];
+  private int sourceLines = 1;
+  private long sourceBytes;
+
+  /**
+   * The number of the line to be anchored next, and whether its anchor is
+   * due before the next thing written.
+   */
+  private int line = 1;
+  private boolean pending;
+
+  /**
+   * Whether lines are being anchored.
+   */
+  private boolean anchoring;
+
+  /**
+   * The number of bytes written in the current HTML file, and their
+   * number when anchoring was finished.
+   */
+  private long htmlBytes, htmlEnd;
+
+  /**
+   * The number of the first line anchored in the current HTML file, and
+   * the byte offsets of the anchors written in it, and their number.
+   */
+  private int firstLine;
+  private long[] anchors = new long[1024];
+  private int anchorCount;
+
+  /**
+   * The digits of the number of the line being anchored.
+   */
+  private final char[] digits = new char[10];
+
+  /**
+   * Constructs a line index for a source.
+   */
+  public LineIndex ()
+    {
+      super(Writer.nullWriter());
+    }
+
+  /**
+   * Makes this filter the writer of the next HTML file of the source, and
+   * returns it.
+   */
+  public Writer open (Writer out)
+    {
+      this.out = out;
+      htmlBytes = 0;
+      anchorCount = 0;
+      firstLine = line;
+      return this;
+    }
+
+  /**
+   * Starts anchoring the lines, from the current one.
+   */
+  public void begin ()
+    {
+      anchoring = true;
+      pending = true;
+      firstLine = line;
+    }
+
+  /**
+   * Stops anchoring the lines; the anchor of a line started but not yet
+   * written is left for the next HTML file.
+   */
+  public void finish ()
+    {
+      anchoring = false;
+      pending = false;
+      htmlEnd = htmlBytes;
+    }
+
+  /**
+   * Suspends anchoring while the documentation comment between the
+   * specified indices of the specified text is written, after anchoring
+   * the lines starting within it.
+   */
+  public void suspend (char[] text, int start, int end) throws IOException
+    {
+      if (pending)
+        writeAnchor();
+
+      for (int i=start; i<end; i++)
+        if (text[i] == '\n')
+          {
+            line++;
+            writeAnchor();
+          }
+
+      anchoring = false;
+    }
+
+  /**
+   * Resumes anchoring after a documentation comment.
+   */
+  public void resume ()
+    {
+      anchoring = true;
+    }
+
+  /**
+   * Counts the characters of the source between the specified indices of
+   * the specified text, which must follow those counted so far.
+   */
+  public void countSource (char[] text, int start, int end)
+    {
+      int run = start;
+
+      for (int i=start; i<end; i++)
+        if (text[i] == '\n')
+          {
+            sourceBytes += byteCount(text,run,i+1-run);
+            run = i+1;
+
+            if (sourceLines == sourceStarts.length)
+              sourceStarts = Arrays.copyOf(sourceStarts,2*sourceLines);
+            sourceStarts[sourceLines++] = sourceBytes;
+          }
+
+      sourceBytes += byteCount(text,run,end-run);
+    }
+
+  /**
+   * Writes the index of the lines anchored in the current HTML file into
+   * the specified file, and returns the writer of the HTML file.
+   */
+  public Writer close (String fileName) throws IOException
+    {
+      int lines = anchorCount;
+
+      // a line is only indexed if the source has a character on it
+      while (lines > 1 && sourceStarts[firstLine+lines-2] >= sourceBytes)
+        lines--;
+
+      int last = firstLine+lines-1;
+      long sourceEnd = (last < sourceLines) ? sourceStarts[last] : sourceBytes;
+
+      DataOutputStream index
+        = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+
+      try
+        {
+          index.writeInt(MAGIC);
+          index.writeInt(VERSION);
+          index.writeInt(firstLine);
+          index.writeInt(lines);
+
+          for (int i=0; i<lines; i++)
+            {
+              index.writeLong(anchors[i]);
+              index.writeLong(sourceStarts[firstLine+i-1]);
+            }
+
+          index.writeLong(lines < anchorCount ? anchors[lines] : htmlEnd);
+          index.writeLong(sourceEnd);
+        }
+      finally
+        {
+          index.close();
+        }
+
+      Writer html = out;
+      out = Writer.nullWriter();
+      return html;
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Writes the anchor of the current line.
+   */
+  private void writeAnchor () throws IOException
+    {
+      pending = false;
+
+      if (anchorCount == anchors.length)
+        anchors = Arrays.copyOf(anchors,2*anchorCount);
+      anchors[anchorCount++] = htmlBytes;
+
+      int start = digits.length;
+      for (int n = line; start == digits.length || n > 0; n /= 10)
+        digits[--start] = (char)('0'+n%10);
+
+      out.write(ANCHOR_START);
+      out.write(digits,start,digits.length-start);
+      out.write(ANCHOR_END);
+      htmlBytes += byteCount(ANCHOR_START,0,ANCHOR_START.length())
+                 + byteCount(digits,start,digits.length-start)
+                 + byteCount(ANCHOR_END,0,ANCHOR_END.length());
+    }
+
+  /**
+   * Writes the specified text, which contains no line break, as the end of
+   * the line written last, even if the anchor of the next one is due
+   * (<i>e.g.</i>, a tag closing a highlighting span).
+   */
+  public void writeTrailing (String s) throws IOException
+    {
+      out.write(s);
+      htmlBytes += byteCount(s,0,s.length());
+    }
+
+  /**
+   * Writes a character, after the anchor of its line if it is due.
+   */
+  public void write (int c) throws IOException
+    {
+      if (pending)
+        writeAnchor();
+
+      out.write(c);
+      htmlBytes += byteCount((char)c);
+
+      if (c == '\n' && anchoring)
+        {
+          line++;
+          pending = true;
+        }
+    }
+
+  /**
+   * Writes characters, anchoring the lines they start.
+   */
+  public void write (char[] text, int offset, int length) throws IOException
+    {
+      int end = offset+length;
+      int run = offset;
+
+      for (int i=offset; i<end; i++)
+        if (text[i] == '\n' && anchoring)
+          {
+            writeRun(text,run,i+1);
+            line++;
+            pending = true;
+            run = i+1;
+          }
+
+      writeRun(text,run,end);
+    }
+
+  /**
+   * Writes characters of a string, anchoring the lines they start.
+   */
+  public void write (String s, int offset, int length) throws IOException
+    {
+      int end = offset+length;
+      int run = offset;
+
+      if (anchoring)
+        for (int i; (i = s.indexOf('\n',run)) >= 0 && i < end;)
+          {
+            writeRun(s,run,i+1);
+            line++;
+            pending = true;
+            run = i+1;
+          }
+
+      writeRun(s,run,end);
+    }
+
+  /**
+   * Writes the characters between the specified indices of the specified
+   * text, which contain no line break but maybe the last one, after the
+   * anchor of their line if it is due.
+   */
+  private void writeRun (char[] text, int start, int end) throws IOException
+    {
+      if (start == end)
+        return;
+
+      if (pending)
+        writeAnchor();
+
+      out.write(text,start,end-start);
+      htmlBytes += byteCount(text,start,end-start);
+    }
+
+  /**
+   * Writes the characters between the specified indices of the specified
+   * string, as <tt>writeRun</tt> does those of an array.
+   */
+  private void writeRun (String s, int start, int end) throws IOException
+    {
+      if (start == end)
+        return;
+
+      if (pending)
+        writeAnchor();
+
+      out.write(s,start,end-start);
+      htmlBytes += byteCount(s,start,end-start);
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Returns the number of bytes encoding the specified character (0 for a
+   * low surrogate, whose pair is counted with its high surrogate).
+   */
+  private long byteCount (char c)
+    {
+      if (singleByte)
+        return 1;
+
+      if (utf8)
+        return (c < 0x80) ? 1
+             : (c < 0x800) ? 2
+             : Character.isHighSurrogate(c) ? 4
+             : Character.isLowSurrogate(c) ? 0
+             : 3;
+
+      return charset.encode(String.valueOf(c)).remaining();
+    }
+
+  /**
+   * Returns the number of bytes encoding the specified characters.
+   */
+  private long byteCount (char[] text, int offset, int length)
+    {
+      if (singleByte)
+        return length;
+
+      if (utf8)
+        {
+          long count = 0;
+
+          for (int i=offset; i<offset+length; i++)
+            count += byteCount(text[i]);
+
+          return count;
+        }
+
+      return charset.encode(CharBuffer.wrap(text,offset,length)).remaining();
+    }
+
+  /**
+   * Returns the number of bytes encoding the specified characters of the
+   * specified character sequence.
+   */
+  private long byteCount (CharSequence text, int offset, int length)
+    {
+      if (singleByte)
+        return length;
+
+      if (utf8)
+        {
+          long count = 0;
+
+          for (int i=offset; i<offset+length; i++)
+            count += byteCount(text.charAt(i));
+
+          return count;
+        }
+
+      return charset.encode(CharBuffer.wrap(text,offset,offset+length)).remaining();
+    }
+}
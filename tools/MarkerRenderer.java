@@ -0,0 +1,97 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class renders the token streams of <tt>Hilite</tt> and
+ * <tt>GenericHilite</tt> as plain text, with each highlighted token
+ * enclosed in markers naming its CSS class (see <tt>JsonRenderer</tt> for
+ * the class names), <i>e.g.</i>,
+ * <pre>
+ * [[kd:class]] [[x:A]] [[b:{]]
+ * </pre>
+ * The text is otherwise written as it is, markers included, so that the
+ * output can be read, searched, and compared (<i>e.g.</i>, to check how a
+ * language profile classifies the tokens of a sample source) but not
+ * reliably parsed back: that is what the JSON formats are for.
+ *
+ * @see         TokenRenderer
+ * @see         FanOutRenderer
+ *
+ * @version     Last modified on Sat Oct 17 14:21:36 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.Writer;
+import java.io.IOException;
+
+public class MarkerRenderer implements TokenRenderer
+{
+  /**
+   * The markers opening and closing a highlighted token.
+   */
+  final static String OPEN = "[[", CLOSE = "]]";
+
+  /**
+   * The output writer.
+   */
+  private final Writer out;
+
+  /**
+   * Constructs a renderer writing to the specified writer.
+   */
+  public MarkerRenderer (Writer out)
+    {
+      this.out = out;
+    }
+
+  /**
+   * Starts rendering a source; nothing is written.
+   */
+  public void start (String name)
+    {
+    }
+
+  /**
+   * Renders the tokens of the specified stream, along with the text
+   * between them.
+   */
+  public void render (TokenStream tokens, boolean last) throws IOException
+    {
+      char[] text = tokens.text();
+      int rendered = 0;
+
+      for (int i=0; i<tokens.size(); i++)
+        {
+          String tokenClass = JsonRenderer.tokenClass(tokens,i);
+
+          if (tokenClass == null)     // part of the plain text
+            continue;
+
+          int start = tokens.start(i);
+          int end = tokens.end(i);
+
+          out.write(text,rendered,start-rendered);
+          out.write(OPEN);
+          out.write(tokenClass);
+          out.write(':');
+          out.write(text,start,end-start);
+          out.write(CLOSE);
+          rendered = end;
+        }
+
+      int end = last ? tokens.length() : (tokens.size() > 0 ? tokens.end(tokens.size()-1) : 0);
+      out.write(text,rendered,end-rendered);
+    }
+
+  /**
+   * Ends rendering a source, and flushes the output.
+   */
+  public void end () throws IOException
+    {
+      out.flush();
+    }
+}
@@ -36,6 +36,7 @@ import java.util.Date;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 
 // import com.rits.cloning.Cloner;	// For deep cloning of any object.
 					// Also needs objenesis package for compiling and running.
@@ -1141,6 +1142,26 @@ public class Misc
 
   /* ************************************************************************ */
 
+  /**
+   * Returns the total number of bytes allocated so far by the current
+   * thread, or -1 if the JVM does not support measuring it.
+   */
+  public static final long allocatedBytes ()
+    {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+      if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+          com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+          if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+      return -1;
+    }
+
+  /* ************************************************************************ */
+
   /**
    * Sorts the specified array of comparable objects in place. It
    * assumes that the class of objects stored in the array implements
@@ -0,0 +1,371 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class splits the HTML rendering of a large source into pages of a
+ * fixed number of source lines, so that browsers need not lay out one
+ * huge <tt>&lt;PRE&gt;</tt> block. The pages of an output file named,
+ * <i>e.g.</i>, <tt>Parser.html</tt> are written into
+ * <tt>Parser.1.html</tt>, <tt>Parser.2.html</tt>, <i>etc.</i>, in the same
+ * directory, each linking to the previous and next pages and to the output
+ * file itself, which lists the pages with their ranges of lines.
+ * <p>
+ * The source is still lexed once, as a whole, so that the tokens spanning
+ * a page break are highlighted as they are in a single page: such a token
+ * is split in two at the break, each part being highlighted on its own
+ * page (the second part of an annotation comment is not marked as such
+ * again). Documentation comments, whose formatting is not split, are kept
+ * whole on the page where they start, which may then run a few lines
+ * longer. Pages are written as the tokens are read: only the text not yet
+ * rendered is held.
+ *
+ * @see         TokenRenderer
+ * @see         TokenStream
+ * @see         Hilite
+ * @see         GenericHilite
+ *
+ * @version     Last modified on Sat Oct 17 17:23:33 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.File;
+import java.io.Writer;
+import java.io.IOException;
+import java.util.Arrays;
+
+import hlt.language.io.FileTools;
+
+public class PageRenderer implements TokenRenderer
+{
+  /**
+   * The interface of the HTML renderers whose output may be paginated.
+   */
+  interface Pageable extends TokenRenderer
+    {
+      /**
+       * Makes this renderer write the next page to the specified writer
+       * under the specified name.
+       */
+      public void setPage (Writer out, String name);
+
+      /**
+       * Sets the navigation links written before and after the source.
+       */
+      public void setNavigation (String links);
+    }
+
+  /**
+   * The renderer of the pages.
+   */
+  private final Pageable html;
+
+  /**
+   * The number of source lines per page.
+   */
+  private final int pageLines;
+
+  /**
+   * The writer of the output file, and its name.
+   */
+  private final Writer index;
+  private final String indexName;
+
+  /**
+   * The directory of the output file (with its trailing separator).
+   */
+  private final String dir;
+
+  /**
+   * The metrics to which the pages are accounted, if any.
+   */
+  private final HiliteMetrics metrics;
+
+  /**
+   * The name of the source.
+   */
+  private String source;
+
+  /**
+   * The tokens not yet rendered, and the head of these that goes on the
+   * current page when it is broken.
+   */
+  private final TokenStream page = new TokenStream(), head = new TokenStream();
+
+  /**
+   * The index in the text of the tokens not yet rendered up to which line
+   * breaks have been counted, and the last character counted.
+   */
+  private int scanned;
+  private char lastChar;
+
+  /**
+   * The first source line of the current page, and the number of line
+   * breaks counted on it.
+   */
+  private int firstLine, lineCount;
+
+  /**
+   * The writer of the current page.
+   */
+  private Writer pageOut;
+
+  /**
+   * The first and last source lines of each page written so far.
+   */
+  private int[] firstLines = new int[16], lastLines = new int[16];
+
+  /**
+   * The number of pages written so far.
+   */
+  private int pageCount;
+
+  /**
+   * Constructs a renderer writing pages of the specified number of lines
+   * with the specified HTML renderer, and their list into the specified
+   * writer of the output file of the specified name (relative to the
+   * specified directory).
+   * @param html the HTML renderer of the pages
+   * @param lines the number of source lines per page
+   * @param index the writer of the output file
+   * @param name the name of the output file
+   * @param dir the directory of the output file (with its trailing separator)
+   * @param metrics the metrics to which the pages are accounted, or <tt>null</tt>
+   */
+  public PageRenderer (Pageable html, int lines, Writer index, String name,
+                       String dir, HiliteMetrics metrics)
+    {
+      if (lines <= 0)
+        throw new IllegalArgumentException("Bad number of lines per page: "+lines);
+
+      this.html = html;
+      this.pageLines = lines;
+      this.index = index;
+      this.indexName = name;
+      this.dir = dir;
+      this.metrics = metrics;
+    }
+
+  /**
+   * Returns the name of the file of the page of the specified number of
+   * the output file of the specified name (its name, with the number
+   * inserted before its extension).
+   */
+  static String pageName (String name, int number)
+    {
+      int dot = name.lastIndexOf('.');
+
+      if (dot <= name.lastIndexOf(File.separatorChar))
+        return name+"."+number;
+
+      return name.substring(0,dot)+"."+number+name.substring(dot);
+    }
+
+  /**
+   * Returns the name of the file of the page of the specified number.
+   */
+  final String pageName (int number)
+    {
+      return pageName(indexName,number);
+    }
+
+  /**
+   * Returns the number of pages written so far.
+   */
+  public int pageCount ()
+    {
+      return pageCount;
+    }
+
+  /**
+   * Returns the navigation links of the page of the specified number: to
+   * the previous page and the list of pages, and at the bottom of the page
+   * (since pages are written as the source is read), to the next page.
+   */
+  private String links (int number, boolean bottom, boolean hasNext)
+    {
+      String prev = (number > 1)
+        ? "<A HREF=\""+new File(pageName(number-1)).getName()+"\">&lt;&nbsp;prev</A>"
+        : "&lt;&nbsp;prev";
+      String next = hasNext
+        ? "<A HREF=\""+new File(pageName(number+1)).getName()+"\">next&nbsp;&gt;</A>"
+        : "next&nbsp;&gt;";
+
+      return "<P ALIGN=CENTER><TT>"+prev+" | <A HREF=\""+new File(indexName).getName()+
+             "\">index</A>"+(bottom ? " | "+next : "")+"</TT>\n";
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * Starts rendering the source with the specified name on its first page.
+   */
+  public void start (String name) throws IOException
+    {
+      source = name;
+      page.release();
+      scanned = 0;
+      lastChar = '\n';
+      firstLine = 1;
+      lineCount = 0;
+      pageCount = 0;
+
+      openPage();
+    }
+
+  /**
+   * Renders the tokens of the specified stream, on as many pages as needed.
+   * The page is broken after the line break ending its last line, provided
+   * some text follows it; if none has been read yet, the tokens are held
+   * until it is.
+   */
+  public void render (TokenStream tokens, boolean last) throws IOException
+    {
+      int size = tokens.size();
+      boolean waiting = false;
+
+      page.append(tokens,last ? tokens.length() : (size > 0 ? tokens.end(size-1) : 0));
+
+      while (scanned < page.length())
+        {
+          char c = page.text()[scanned];
+
+          if (c == '\n' && lineCount+1 >= pageLines)
+            {
+              int token = page.find(scanned);
+
+              if (token >= 0 && page.type(token) == Hilite.JAVADOC) // or GenericHilite.SYNTAXDOC
+                {
+                  lineCount++;  // keep the documentation comment whole
+                  lastChar = page.text()[scanned++];
+                  continue;
+                }
+
+              if (scanned+1 == page.length())
+                {
+                  waiting = !last;
+                  if (last)
+                    {
+                      lineCount++;
+                      lastChar = page.text()[scanned++];
+                    }
+                  break;
+                }
+
+              breakPage(scanned+1,token);
+              continue;
+            }
+
+          if (c == '\n')
+            lineCount++;
+          lastChar = c;
+          scanned++;
+        }
+
+      if (last)
+        html.render(page,true);
+      else if (!waiting && page.size() > 0)
+        {
+          int rendered = page.end(page.size()-1);
+
+          html.render(page,false);
+          page.discard(rendered);
+          scanned -= rendered;
+        }
+    }
+
+  /**
+   * Ends the last page, writes the list of the pages into the output file,
+   * and deletes the pages left from an earlier output with more pages.
+   */
+  public void end () throws IOException
+    {
+      closePage(false);
+
+      index.write("<HTML>\n<HEAD>\n<TITLE>\n"+indexName+"\n</TITLE>\n</HEAD>\n"+
+                  "<BODY BGCOLOR=\"#DDDDDD\">\n<CENTER>\n"+
+                  "<TABLE BGCOLOR=white WIDTH=50% BORDER=5 CELLPADDING=20>\n<TR><TD ALIGN=CENTER>\n"+
+                  "<SPAN STYLE=\"FONT-SIZE:X-LARGE\"><TT><B>"+FileTools.simpleName(source)+
+                  "</B></TT></SPAN>\n<P>\n</TD></TR>\n</TABLE>\n</CENTER>\n<P>\n<OL>\n");
+
+      for (int i=0; i<pageCount; i++)
+        index.write("<LI><A HREF=\""+new File(pageName(i+1)).getName()+"\"><TT><B>Lines "+
+                    firstLines[i]+"-"+lastLines[i]+"</B></TT></A>\n");
+
+      index.write("</OL>\n</BODY>\n</HTML>\n");
+
+      HiliteOutput.deletePages(dir+indexName,pageCount+1);
+    }
+
+  /**
+   * Renders the text up to the specified index (just after a line break)
+   * on the current page, splitting the token at the specified index (if
+   * not -1) if it spans the break, and starts the next page.
+   */
+  private void breakPage (int at, int token) throws IOException
+    {
+      head.reset(page.text(),at);
+
+      for (int i=0; i<page.size() && page.end(i) <= at; i++)
+        head.add(page.type(i),page.tag(i),page.aux(i),page.start(i),page.end(i));
+
+      boolean split = token >= 0 && page.end(token) > at;
+
+      if (split)
+        head.add(page.type(token),page.tag(token),page.aux(token),page.start(token),at);
+
+      html.render(head,true);
+      lineCount++;
+      lastChar = '\n';
+      closePage(true);
+
+      if (split)
+        page.split(token,at);
+
+      page.discard(at);
+      scanned = 0;
+      firstLine += lineCount;
+      lineCount = 0;
+
+      openPage();
+    }
+
+  /**
+   * Opens the file of the next page, and starts rendering the source on it.
+   */
+  private void openPage () throws IOException
+    {
+      if (pageCount == firstLines.length)
+        {
+          firstLines = Arrays.copyOf(firstLines,2*pageCount);
+          lastLines = Arrays.copyOf(lastLines,2*pageCount);
+        }
+
+      firstLines[pageCount] = lastLines[pageCount] = firstLine;
+      pageCount++;
+
+      String name = pageName(pageCount);
+
+      pageOut = HiliteOutput.open(dir+name,metrics);
+      html.setPage(pageOut,name);
+      html.setNavigation(links(pageCount,false,false));
+      html.start(source);
+    }
+
+  /**
+   * Ends the current page, with a link to the next page if there is one,
+   * and closes its file.
+   */
+  private void closePage (boolean hasNext) throws IOException
+    {
+      lastLines[pageCount-1] = Math.max(firstLine,firstLine+lineCount-(lastChar == '\n' ? 1 : 0));
+
+      html.setNavigation(links(pageCount,true,hasNext));
+      html.end();
+      html.setNavigation("");
+      pageOut.close();
+    }
+}
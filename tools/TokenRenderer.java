@@ -0,0 +1,47 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This is the interface of the renderers of the token streams read by
+ * <tt>Hilite</tt> and <tt>GenericHilite</tt>. A source is rendered with
+ * one call to <tt>start</tt>, then one or more calls to <tt>render</tt>
+ * (one per chunk of tokens when the source is read through a stream),
+ * and one call to <tt>end</tt>. Each call to <tt>render</tt> renders the
+ * text of the token stream from its start: the stream only holds what
+ * follows what was rendered by the previous call.
+ *
+ * @see         TokenStream
+ * @see         Hilite
+ * @see         GenericHilite
+ * @see         AnsiRenderer
+ *
+ * @version     Last modified on Sat Oct 17 12:41:26 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.IOException;
+
+public interface TokenRenderer
+{
+  /**
+   * Starts rendering the source with the specified name.
+   */
+  public void start (String name) throws IOException;
+
+  /**
+   * Renders the tokens of the specified stream, along with the text
+   * between them: up to the end of its last token unless it is the last
+   * chunk of the source, in which case the text after its last token is
+   * rendered as well.
+   */
+  public void render (TokenStream tokens, boolean last) throws IOException;
+
+  /**
+   * Ends rendering the source.
+   */
+  public void end () throws IOException;
+}
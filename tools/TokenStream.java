@@ -0,0 +1,290 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.tools;
+
+/**
+ * This class holds the tokens read by the lexer of <tt>Hilite</tt> or
+ * <tt>GenericHilite</tt> from a source text, for a renderer to consume.
+ * Each token takes three consecutive integers of a packed array: its
+ * type, highlighting tag, and auxiliary value (for a comment, the length
+ * of its opening delimiter, or 0 if it is the continuation of a comment
+ * split across pages; see <tt>PageRenderer</tt>) packed in one, followed by the indices in the
+ * text of its start and end. Only the tokens that are rendered as a unit
+ * are recorded: the characters between them (plain characters) are
+ * rendered as they are. Since a stream references its text rather than
+ * copying words out of it, lexing a source allocates nothing but the
+ * token array, which is reused from one source to the next.
+ * <p>
+ * When the source is read through a reader rather than from a buffer,
+ * the text is recorded as it is read (see <tt>recorder</tt>) so that the
+ * tokens may still refer to it; the tokens may then be rendered and
+ * discarded by chunks, keeping only the text not yet rendered.
+ *
+ * @see         PageRenderer
+ * @see         Hilite
+ * @see         GenericHilite
+ *
+ * @version     Last modified on Sat Oct 17 14:58:41 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class TokenStream
+{
+  /**
+   * Number of integers per token.
+   */
+  private final static int STRIDE = 3;
+
+  /**
+   * The source text.
+   */
+  private char[] text;
+
+  /**
+   * Number of characters of the text.
+   */
+  private int length;
+
+  /**
+   * The packed tokens.
+   */
+  private int[] tokens = new int[STRIDE*256];
+
+  /**
+   * Number of tokens.
+   */
+  private int size;
+
+  /**
+   * Returns the source text; only its first <tt>length()</tt> characters
+   * are meaningful.
+   */
+  public final char[] text ()
+    {
+      return text;
+    }
+
+  /**
+   * Returns the number of characters of the source text.
+   */
+  public final int length ()
+    {
+      return length;
+    }
+
+  /**
+   * Returns the number of tokens.
+   */
+  public final int size ()
+    {
+      return size;
+    }
+
+  /**
+   * Returns the type of the token at the specified index.
+   */
+  public final int type (int i)
+    {
+      return tokens[STRIDE*i] & 0xFF;
+    }
+
+  /**
+   * Returns the highlighting tag of the token at the specified index.
+   */
+  public final int tag (int i)
+    {
+      return (tokens[STRIDE*i] >>> 8) & 0xFF;
+    }
+
+  /**
+   * Returns the auxiliary value of the token at the specified index.
+   */
+  public final int aux (int i)
+    {
+      return tokens[STRIDE*i] >>> 16;
+    }
+
+  /**
+   * Returns the index in the text of the start of the token at the
+   * specified index.
+   */
+  public final int start (int i)
+    {
+      return tokens[STRIDE*i+1];
+    }
+
+  /**
+   * Returns the index in the text of the end of the token at the
+   * specified index.
+   */
+  public final int end (int i)
+    {
+      return tokens[STRIDE*i+2];
+    }
+
+  /**
+   * Makes this stream empty, over the specified text.
+   */
+  final void reset (char[] text, int length)
+    {
+      this.text = text;
+      this.length = length;
+      size = 0;
+    }
+
+  /**
+   * Makes this stream empty, and releases its text.
+   */
+  final void release ()
+    {
+      reset(null,0);
+    }
+
+  /**
+   * Appends a token to this stream.
+   */
+  final void add (int type, int tag, int aux, int start, int end)
+    {
+      int i = STRIDE*size;
+
+      if (i == tokens.length)
+        tokens = Arrays.copyOf(tokens,2*tokens.length);
+
+      tokens[i]   = type | tag << 8 | aux << 16;
+      tokens[i+1] = start;
+      tokens[i+2] = end;
+      size++;
+    }
+
+  /**
+   * Discards the specified number of characters at the start of the text,
+   * along with the tokens ending within them, shifting the remaining
+   * characters and tokens to the start.
+   */
+  final void discard (int n)
+    {
+      int first = 0;
+
+      while (first < size && end(first) <= n)
+        first++;
+
+      System.arraycopy(text,n,text,0,length-n);
+      length -= n;
+
+      System.arraycopy(tokens,STRIDE*first,tokens,0,STRIDE*(size-first));
+      size -= first;
+
+      for (int i=0; i<size; i++)
+        {
+          tokens[STRIDE*i+1] -= n;
+          tokens[STRIDE*i+2] -= n;
+        }
+    }
+
+  /**
+   * Appends the specified number of characters at the start of the text of
+   * the specified stream to the text of this one, along with the tokens
+   * ending within them.
+   */
+  final void append (TokenStream stream, int n)
+    {
+      if (text == null)
+        text = new char[Math.max(4096,n)];
+      else if (length+n > text.length)
+        text = Arrays.copyOf(text,Math.max(2*text.length,length+n));
+
+      System.arraycopy(stream.text,0,text,length,n);
+
+      for (int i=0; i<stream.size && stream.end(i) <= n; i++)
+        add(stream.type(i),stream.tag(i),stream.aux(i),length+stream.start(i),length+stream.end(i));
+
+      length += n;
+    }
+
+  /**
+   * Returns the index of the token containing the character at the
+   * specified index of the text, or -1 if there is none.
+   */
+  final int find (int index)
+    {
+      int low = 0, high = size-1;
+
+      while (low <= high)
+        {
+          int middle = (low+high) >>> 1;
+
+          if (end(middle) <= index)
+            low = middle+1;
+          else if (start(middle) > index)
+            high = middle-1;
+          else
+            return middle;
+        }
+
+      return -1;
+    }
+
+  /**
+   * Moves the start of the token at the specified index to the specified
+   * index of the text, making it the continuation of a token split in two:
+   * its auxiliary value becomes 0.
+   */
+  final void split (int i, int start)
+    {
+      tokens[STRIDE*i] &= 0xFFFF;
+      tokens[STRIDE*i+1] = start;
+    }
+
+  /**
+   * Makes this stream empty, and returns a pushback reader (with a pushback
+   * buffer of the specified size) over the specified reader that records in
+   * the text of this stream the characters that are read off it, and not
+   * pushed back.
+   */
+  final PushbackReader recorder (Reader in, int size)
+    {
+      reset(new char[4096],0);
+      return new Recorder(in,size);
+    }
+
+  //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+  /**
+   * A pushback reader recording the characters read into the text.
+   */
+  private class Recorder extends PushbackReader
+    {
+      Recorder (Reader in, int size)
+        {
+          super(in,size);
+        }
+
+      public int read () throws IOException
+        {
+          int c = super.read();
+
+          if (c != -1)
+            {
+              if (length == text.length)
+                text = Arrays.copyOf(text,2*text.length);
+              text[length++] = (char)c;
+            }
+
+          return c;
+        }
+
+      public void unread (int c) throws IOException
+        {
+          super.unread(c);
+          length--;
+        }
+    }
+}